@@ -0,0 +1,597 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// On-disk hash table of account records, the cold tier of TieredAccountStore. The file is a
+// 64 byte header, the hash region (the hash of every slot, 4 bytes each, padded to a page) and
+// then fixed-size slots, found by open addressing on the account number's hash:
+//
+//   0  byte   slot state (EMPTY / USED / DELETED / TOMBSTONE)
+//   4  int    hash of the account number
+//   8  ...    BinaryCodec account record
+//
+// A TOMBSTONE is the last record of an account removed from the store. Lookups treat it as
+// absent, but it keeps its slot, so scans that ask for them still find closed accounts; putting
+// the account back reuses the slot. DELETED slots are freed outright and dropped on rehash.
+//
+// Nothing per slot is kept on the heap. Probing reads the hash region PROBE_BLOCK hashes at a
+// time, which almost always covers the whole probe sequence, and then reads only the slots whose
+// hash matches, so a lookup is usually two small reads.
+//
+// When used plus deleted slots pass GROW_LOAD the table starts growing into a new file (twice as
+// large if needed). Copying the whole table at once would hold the write lock for as long as that
+// takes, so every write copies the next GROW_STEP slots instead, and a change to a slot the copy
+// has already passed is made in the new table too. Reads and scans keep using the old table until
+// the copy reaches its end and the new file replaces it. Writes copy faster than they can fill the
+// table, so it only reaches MAX_LOAD, where the rest is copied at once, if something went wrong.
+class AccountFile implements Closeable {
+
+    static final int DEFAULT_SLOT_SIZE = 256;
+
+    private static final int FILE_MAGIC = 0xBA5EF11E;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_HEADER = 8;
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+    private static final byte TOMBSTONE = 3;
+    private static final double GROW_LOAD = 0.5;
+    private static final double MAX_LOAD = 0.7;
+    private static final int GROW_STEP = 16;
+    private static final int RELEASE_STEP = 64 * 1024;
+    private static final int SCAN_BATCH = 64;
+    private static final int PROBE_BLOCK = 16;
+    private static final int PAGE = 4096;
+    // Values in the hash region that are not hashes; real hashes are remapped around them
+    private static final int FREE = 0;
+    private static final int REMOVED = 1;
+
+    private final Path path;
+    private final int slotSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<ByteBuffer> slotBuffer;
+    private final ThreadLocal<ByteBuffer> probeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(PROBE_BLOCK * 4));
+    private final ByteBuffer hashWrite = ByteBuffer.allocateDirect(4); // only used under the write lock
+    private FileChannel channel;
+    private int slotCount; // a power of two
+    private int used;
+    private int deleted;
+    private int tombstones;
+    private int rehashes;
+    private Growth growth; // null unless the table is being copied into a new file
+    private FileChannel retired; // the file a growth replaced, released a little per write
+
+    // Creates a new, empty file at path, readable by the owner only; nothing may exist there yet
+    AccountFile(Path path, int slotSize, int initialSlots) throws IOException {
+        this.path = path;
+        this.slotSize = slotSize;
+        // Direct, so the channel reads straight into it instead of copying through a temporary buffer
+        this.slotBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(slotSize));
+        this.slotCount = Integer.highestOneBit(Math.max(initialSlots, 16) - 1) << 1;
+        this.channel = create(path, slotCount);
+    }
+
+    int maxRecordSize() {
+        return slotSize - SLOT_HEADER;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    BankAccount read(String accountID) {
+        return read(accountID, USED);
+    }
+
+    // The tombstone of a removed account, or null if it was never removed (or put back since)
+    BankAccount readRemoved(String accountID) {
+        return read(accountID, TOMBSTONE);
+    }
+
+    private BankAccount read(String accountID, byte state) {
+        lock.readLock().lock();
+        try {
+            ByteBuffer slot = slotBuffer.get();
+            if (find(accountID, hash(accountID), slot) < 0 || slot.get(0) != state) {
+                return null;
+            }
+            slot.position(SLOT_HEADER);
+            return BinaryCodec.decodeAccount(slot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(String accountID) {
+        lock.readLock().lock();
+        try {
+            ByteBuffer slot = slotBuffer.get();
+            return find(accountID, hash(accountID), slot) >= 0 && slot.get(0) == USED;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Throws IllegalArgumentException if the account's record would not fit in a slot
+    void checkFits(BankAccount account) {
+        int size = BinaryCodec.accountSize(account);
+        if (size > maxRecordSize()) {
+            throw new IllegalArgumentException("Account details are too long to store (" + size + " bytes).");
+        }
+    }
+
+    // Inserts the account or overwrites its previous record
+    void write(BankAccount account) {
+        checkFits(account);
+        lock.writeLock().lock();
+        try {
+            String accountID = account.getAccountNumber();
+            int hash = hash(accountID);
+            ByteBuffer slot = slotBuffer.get();
+            int at = find(accountID, hash, slot);
+            if (at < 0) {
+                if (used + deleted + tombstones + 1 > slotCount * MAX_LOAD) {
+                    finishGrowth();
+                    at = find(accountID, hash, slot);
+                }
+                at = -at - 1;
+                if (readHash(channel, at) == REMOVED) {
+                    deleted--;
+                }
+                writeHash(channel, at, hash);
+                used++;
+            } else if (slot.get(0) == TOMBSTONE) {
+                tombstones--;
+                used++;
+            }
+            slot.clear();
+            slot.put(0, USED);
+            slot.putInt(4, hash);
+            slot.position(SLOT_HEADER);
+            BinaryCodec.encodeAccount(account, slot);
+            slot.clear();
+            writeFully(channel, slot, offsetOf(at));
+            mirror(at, accountID, hash, slot);
+            grow();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replaces the account's record with a tombstone holding the given final state
+    boolean bury(BankAccount account) {
+        lock.writeLock().lock();
+        try {
+            String accountID = account.getAccountNumber();
+            int hash = hash(accountID);
+            ByteBuffer slot = slotBuffer.get();
+            int at = find(accountID, hash, slot);
+            if (at < 0 || slot.get(0) != USED) {
+                return false;
+            }
+            slot.clear();
+            slot.put(0, TOMBSTONE);
+            slot.putInt(4, hash);
+            slot.position(SLOT_HEADER);
+            BinaryCodec.encodeAccount(account, slot);
+            slot.clear();
+            writeFully(channel, slot, offsetOf(at));
+            used--;
+            tombstones++;
+            mirror(at, accountID, hash, slot);
+            grow();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Overwrites the tombstone of a removed account with the given state; false if there is none
+    boolean rewriteRemoved(BankAccount account) {
+        lock.writeLock().lock();
+        try {
+            String accountID = account.getAccountNumber();
+            int hash = hash(accountID);
+            ByteBuffer slot = slotBuffer.get();
+            int at = find(accountID, hash, slot);
+            if (at < 0 || slot.get(0) != TOMBSTONE) {
+                return false;
+            }
+            slot.clear();
+            slot.put(0, TOMBSTONE);
+            slot.putInt(4, hash);
+            slot.position(SLOT_HEADER);
+            BinaryCodec.encodeAccount(account, slot);
+            slot.clear();
+            writeFully(channel, slot, offsetOf(at));
+            mirror(at, accountID, hash, slot);
+            grow();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Frees the account's slot without leaving a tombstone
+    boolean delete(String accountID) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer slot = slotBuffer.get();
+            int hash = hash(accountID);
+            int at = find(accountID, hash, slot);
+            if (at < 0 || slot.get(0) != USED) {
+                return false;
+            }
+            slot.clear().limit(1);
+            slot.put(0, DELETED);
+            writeFully(channel, slot, offsetOf(at));
+            writeHash(channel, at, REMOVED);
+            used--;
+            deleted++;
+            mirror(at, accountID, hash, slot);
+            grow();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Bumped each time a grown table replaces the old one, which moves records between slots
+    int rehashes() {
+        lock.readLock().lock();
+        try {
+            return rehashes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Decodes the accounts in up to SCAN_BATCH slots starting at fromSlot into out and returns
+    // the slot to continue from, or -1 at the end. Only records whose change sequence is above
+    // changedAfter are decoded; the others are skipped on the sequence field alone. Tombstones are
+    // included if withRemoved is set. A rehash between calls may make a scan miss or repeat
+    // accounts (see rehashes()), so callers treat it as a weakly consistent walk.
+    int scan(int fromSlot, long changedAfter, boolean withRemoved, List<BankAccount> out) {
+        lock.readLock().lock();
+        try {
+            if (fromSlot >= slotCount) {
+                return -1;
+            }
+            int count = Math.min(SCAN_BATCH, slotCount - fromSlot);
+            ByteBuffer batch = ByteBuffer.allocate(count * slotSize);
+            readFully(channel, batch, offsetOf(fromSlot));
+            for (int i = 0; i < count; i++) {
+                int at = i * slotSize;
+                byte state = batch.get(at);
+                if ((state == USED || withRemoved && state == TOMBSTONE)
+                        && BinaryCodec.accountChangeSequence(batch, at + SLOT_HEADER) > changedAfter) {
+                    batch.limit(at + slotSize).position(at + SLOT_HEADER);
+                    out.add(BinaryCodec.decodeAccount(batch));
+                    batch.limit(batch.capacity());
+                }
+            }
+            return fromSlot + count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+            if (retired != null) {
+                retired.close();
+                retired = null;
+            }
+            if (growth != null) {
+                growth.channel.close();
+                Files.deleteIfExists(growth.path);
+                growth = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Slot of the account's record or tombstone, or -(slot to insert it at + 1) when it has neither;
+    // when found, the slot is left in the buffer. Only slots whose hash matches are read, to compare
+    // the account number.
+    private int find(String accountID, int hash, ByteBuffer slot) throws IOException {
+        return find(channel, slotCount, accountID, hash, slot);
+    }
+
+    private int find(FileChannel table, int slots, String accountID, int hash, ByteBuffer slot) throws IOException {
+        ByteBuffer hashes = probeBuffer.get();
+        int mask = slots - 1;
+        int at = hash & mask;
+        int firstRemoved = -1;
+        for (int probes = 0; probes < slots; ) {
+            int count = Math.min(Math.min(PROBE_BLOCK, slots - at), slots - probes);
+            hashes.clear().limit(count * 4);
+            readFully(table, hashes, hashOffset(at));
+            for (int i = 0; i < count; i++) {
+                int entry = hashes.getInt(i * 4);
+                if (entry == FREE) {
+                    return -(firstRemoved >= 0 ? firstRemoved : at + i) - 1;
+                }
+                if (entry == REMOVED) {
+                    if (firstRemoved < 0) {
+                        firstRemoved = at + i;
+                    }
+                } else if (entry == hash) {
+                    slot.clear();
+                    readFully(table, slot, offsetOf(slots, at + i));
+                    if (accountID.equals(BinaryCodec.accountNumber(slot, SLOT_HEADER))) {
+                        return at + i;
+                    }
+                }
+            }
+            probes += count;
+            at = (at + count) & mask;
+        }
+        return -firstRemoved - 1;
+    }
+
+    // First FREE slot on the probe sequence of hash; any REMOVED slots on the way are left alone
+    private int freeSlot(FileChannel target, int slots, int hash) throws IOException {
+        ByteBuffer hashes = probeBuffer.get();
+        int mask = slots - 1;
+        int at = hash & mask;
+        while (true) {
+            int count = Math.min(PROBE_BLOCK, slots - at);
+            hashes.clear().limit(count * 4);
+            readFully(target, hashes, hashOffset(at));
+            for (int i = 0; i < count; i++) {
+                if (hashes.getInt(i * 4) == FREE) {
+                    return at + i;
+                }
+            }
+            at = (at + count) & mask;
+        }
+    }
+
+    // A new table being filled from the current one, GROW_STEP slots per write
+    private static final class Growth {
+        final Path path;
+        final FileChannel channel;
+        final int slotCount;
+        final ByteBuffer hashes = ByteBuffer.allocateDirect(GROW_STEP * 4);
+        final ByteBuffer batch;
+        final ByteBuffer found; // slots read by find() in the new table, kept apart from the caller's
+        int copied; // slots of the current table below this have been copied
+        int deleted; // REMOVED slots in the new table
+
+        Growth(Path path, FileChannel channel, int slotCount, int slotSize) {
+            this.path = path;
+            this.channel = channel;
+            this.slotCount = slotCount;
+            this.batch = ByteBuffer.allocateDirect(GROW_STEP * slotSize);
+            this.found = ByteBuffer.allocateDirect(slotSize);
+        }
+    }
+
+    // Copies the next slots into the new table, starting a growth once the table is half full and
+    // switching to the new table once the copy is done
+    private void grow() throws IOException {
+        if (retired != null) {
+            release();
+        }
+        if (growth == null) {
+            if (used + deleted + tombstones <= slotCount * GROW_LOAD) {
+                return;
+            }
+            startGrowth();
+        }
+        copyStep();
+        if (growth.copied == slotCount) {
+            switchTables();
+        }
+    }
+
+    // Copies whatever is left at once; starts a growth first if none is under way
+    private void finishGrowth() throws IOException {
+        if (growth == null) {
+            startGrowth();
+        }
+        while (growth.copied < slotCount) {
+            copyStep();
+        }
+        switchTables();
+    }
+
+    // The new table is twice as large unless most of the load is deleted slots, which are not copied
+    private void startGrowth() throws IOException {
+        int live = used + tombstones;
+        int newCount = live * 4 > slotCount ? slotCount * 2 : slotCount;
+        Path next = path.resolveSibling(path.getFileName() + ".rehash");
+        Files.deleteIfExists(next); // left behind by a growth that failed part way
+        growth = new Growth(next, create(next, newCount), newCount, slotSize);
+    }
+
+    private void copyStep() throws IOException {
+        int from = growth.copied;
+        int count = Math.min(GROW_STEP, slotCount - from);
+        ByteBuffer hashes = growth.hashes;
+        ByteBuffer batch = growth.batch;
+        hashes.clear().limit(count * 4);
+        readFully(channel, hashes, hashOffset(from));
+        batch.clear().limit(count * slotSize);
+        readFully(channel, batch, offsetOf(from));
+        for (int i = 0; i < count; i++) {
+            int hash = hashes.getInt(i * 4);
+            if (hash == FREE || hash == REMOVED) {
+                continue;
+            }
+            // Not in the new table yet: only changes to slots below 'copied' are mirrored there
+            int at = freeSlot(growth.channel, growth.slotCount, hash);
+            writeHash(growth.channel, at, hash);
+            batch.limit(i * slotSize + slotSize).position(i * slotSize);
+            writeFully(growth.channel, batch, offsetOf(growth.slotCount, at));
+            batch.limit(count * slotSize);
+        }
+        growth.copied = from + count;
+    }
+
+    // Makes the change just written to slot 'at' in the new table too, if the copy has already
+    // passed that slot. The slot buffer holds what was written: a whole slot, or just the DELETED state.
+    private void mirror(int at, String accountID, int hash, ByteBuffer slot) throws IOException {
+        if (growth == null || at >= growth.copied) {
+            return;
+        }
+        int target = find(growth.channel, growth.slotCount, accountID, hash, growth.found);
+        if (slot.get(0) == DELETED) {
+            if (target >= 0) {
+                slot.clear().limit(1);
+                writeFully(growth.channel, slot, offsetOf(growth.slotCount, target));
+                writeHash(growth.channel, target, REMOVED);
+                growth.deleted++;
+            }
+            return;
+        }
+        if (target < 0) {
+            target = -target - 1;
+            if (readHash(growth.channel, target) == REMOVED) {
+                growth.deleted--;
+            }
+            writeHash(growth.channel, target, hash);
+        }
+        slot.clear();
+        writeFully(growth.channel, slot, offsetOf(growth.slotCount, target));
+    }
+
+    // The new table holds everything now: it replaces the old file. The old file is kept open, or
+    // the system would free all its cached pages as the last link goes, which takes about as long as
+    // writing them did; release() gives them back RELEASE_STEP bytes per write instead. It is unlinked
+    // before the move rather than replaced by it, because some file systems flush the new file first
+    // when a rename replaces another; nothing reopens the file, so that would buy nothing.
+    private void switchTables() throws IOException {
+        growth.channel.close();
+        Files.delete(path);
+        Files.move(growth.path, path, StandardCopyOption.ATOMIC_MOVE);
+        if (retired != null) {
+            retired.close(); // only if writes outran release() as well as the copy
+        }
+        retired = channel;
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS);
+        slotCount = growth.slotCount;
+        deleted = growth.deleted;
+        growth = null;
+        rehashes++;
+    }
+
+    private void release() throws IOException {
+        long size = retired.size() - RELEASE_STEP;
+        if (size > 0) {
+            retired.truncate(size);
+        } else {
+            retired.close();
+            retired = null;
+        }
+    }
+
+    private FileChannel create(Path file, int slots) throws IOException {
+        FileChannel created = PrivateFiles.create(file);
+        // Writing the last byte sizes the file; the slots in between read back as zeros (EMPTY)
+        writeFully(created, ByteBuffer.allocate(1), offsetOf(slots, slots) - 1);
+        writeHeader(created, slots);
+        return created;
+    }
+
+    private void writeHeader(FileChannel target, int slots) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, FILE_MAGIC);
+        header.put(4, BinaryCodec.VERSION);
+        header.putInt(8, slotSize);
+        header.putInt(12, slots);
+        writeFully(target, header, 0);
+    }
+
+    private int readHash(FileChannel table, int index) throws IOException {
+        ByteBuffer hashes = probeBuffer.get();
+        hashes.clear().limit(4);
+        readFully(table, hashes, hashOffset(index));
+        return hashes.getInt(0);
+    }
+
+    private void writeHash(FileChannel target, int index, int hash) throws IOException {
+        hashWrite.clear();
+        hashWrite.putInt(0, hash);
+        writeFully(target, hashWrite, hashOffset(index));
+    }
+
+    private static long hashOffset(int index) {
+        return HEADER_SIZE + 4L * index;
+    }
+
+    private long offsetOf(int index) {
+        return offsetOf(slotCount, index);
+    }
+
+    // The slots start on the first page after the hash region of a table with the given slot count
+    private long offsetOf(int slots, int index) {
+        long slotsStart = (HEADER_SIZE + 4L * slots + PAGE - 1) / PAGE * PAGE;
+        return slotsStart + (long) index * slotSize;
+    }
+
+    private static int hash(String accountID) {
+        int h = accountID.hashCode();
+        h ^= h >>> 16;
+        return h == FREE || h == REMOVED ? h + 2 : h;
+    }
+
+    private static void readFully(FileChannel from, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = from.read(buf, position);
+            if (n < 0) {
+                // Past the end of the file: the rest reads as EMPTY
+                while (buf.hasRemaining()) {
+                    buf.put((byte) 0);
+                }
+                break;
+            }
+            position += n;
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel to, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += to.write(buf, position);
+        }
+    }
+}
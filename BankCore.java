@@ -0,0 +1,288 @@
+package com.example.myjavafxapp;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// The account model and currency conversion, kept free of javafx.* so the ledger can run
+// without the UI toolkit (see HeadlessBank). EnhancedBankManagementSystem is the JavaFX front end.
+public final class BankCore {
+
+    private BankCore() {
+    }
+
+//************************************************* A D A P T E R    P A T T E R N *************************************************************************************//
+
+    public interface CurrencyAdapter {
+        double convert(double amount);
+    }
+
+    public static class DollarToTengeAdapter implements CurrencyAdapter {
+        private static final double EXCHANGE_RATE = 500;
+
+        @Override
+        public double convert(double amount) {
+            return amount * EXCHANGE_RATE;
+        }
+    }
+
+    public static class TengeToDollarAdapter implements CurrencyAdapter {
+        private static final double EXCHANGE_RATE = 500;
+
+        @Override
+        public double convert(double amount) {
+            return amount / EXCHANGE_RATE;
+        }
+    }
+
+    // Returns null when there is no adapter for the pair
+    public static CurrencyAdapter adapterFor(String fromCurrency, String toCurrency) {
+        if (fromCurrency.equals("USD") && toCurrency.equals("KZT")) {
+            return new DollarToTengeAdapter();
+        } else if (fromCurrency.equals("KZT") && toCurrency.equals("USD")) {
+            return new TengeToDollarAdapter();
+        }
+        return null;
+    }
+
+//***************************************** O B S E R V E R   P A T T E R N *****************************************************************************************//
+
+    interface AccountObserver {
+        void update(BankAccount bankAccount);
+    }
+
+    public static class DeleteObserver implements AccountObserver {
+        @Override
+        public void update(BankAccount bankAccount) {
+            System.out.println("The Client " + bankAccount.getAccountHolder() + " (" + bankAccount.getAccountNumber() + ") has been deleted!");
+        }
+    }
+
+    public static class RegisterObserver implements AccountObserver {
+        @Override
+        public void update(BankAccount bankAccount) {
+            System.out.println("The Client " + bankAccount.getAccountHolder() + " (" + bankAccount.getAccountNumber() + ") has been registered!");
+        }
+    }
+
+    public enum AccountEvent { FROZEN, UNFROZEN, CLOSED }
+
+    // Bulk admin jobs report a whole chunk of accounts at once instead of one update per account
+    public interface AccountBatchObserver {
+        void update(AccountEvent event, List<BankAccount> bankAccounts);
+    }
+
+    public static class BatchLogObserver implements AccountBatchObserver {
+        @Override
+        public void update(AccountEvent event, List<BankAccount> bankAccounts) {
+            System.out.println(bankAccounts.size() + " clients have been " + event.name().toLowerCase() + "!");
+        }
+    }
+
+    public static class BankAccount {
+        private static final SecureRandom SALTS = new SecureRandom();
+        private static final String PBKDF2 = "pbkdf2-sha256";
+        // Checks that hash thousands of passwords lower this; each hash records the count it was made with
+        private static final int PASSWORD_ITERATIONS = Integer.getInteger("bank.passwordIterations", 600_000);
+        private static final int PASSWORD_HASH_BITS = 256;
+
+        private final String accountNumber;
+        private final String accountHolder;
+        private volatile double balance;
+        private String currency;
+        private String passwordHash; // "pbkdf2-sha256:iterations:salt:hash", Base64; the password itself is not kept
+        private volatile long changeSequence; // Journal sequence of the last posting to this account
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean frozen; // A frozen account takes no postings until it is unfrozen or closed
+        private volatile boolean closed; // Paid out and frozen for good, or removed from the store
+        private volatile double reconciledBalance; // What the journal said the balance was at reconciledSequence
+        private volatile long reconciledSequence;  // Journal sequence the Reconciler last verified this account at
+        private final List<AccountObserver> observers = new ArrayList<>();
+
+        public BankAccount(String accountNumber, String accountHolder, double balance, String password) {
+            this.accountNumber = accountNumber;
+            this.accountHolder = accountHolder;
+            this.balance = balance;
+            this.passwordHash = password == null ? null : hashPassword(password, newSalt(), PASSWORD_ITERATIONS);
+        }
+
+        public String getAccountNumber() {
+            return accountNumber;
+        }
+
+        public String getAccountHolder() {
+            return accountHolder;
+        }
+
+        public double getBalance() {
+            return balance;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        // Also accepts the "salt:SHA-256(salt + password)" hashes of records written before PBKDF2
+        public boolean checkPassword(String password) {
+            String hash = passwordHash;
+            if (hash == null || password == null) {
+                return false;
+            }
+            String[] parts = hash.split(":");
+            String expected;
+            if (parts.length == 4 && parts[0].equals(PBKDF2)) {
+                expected = hashPassword(password, Base64.getDecoder().decode(parts[2]), Integer.parseInt(parts[1]));
+            } else if (parts.length == 2) {
+                expected = legacyHash(password, Base64.getDecoder().decode(parts[0]));
+            } else {
+                return false;
+            }
+            return MessageDigest.isEqual(hash.getBytes(StandardCharsets.US_ASCII), expected.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        String getPasswordHash() {
+            return passwordHash;
+        }
+
+        public long getChangeSequence() {
+            return changeSequence;
+        }
+
+        public long getLastActivity() {
+            return lastActivity;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        void setFrozen(boolean frozen) {
+            this.frozen = frozen;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        void markClosed() {
+            this.closed = true;
+        }
+
+        // Used when an account is read back from its binary record
+        void restorePasswordHash(String passwordHash) {
+            this.passwordHash = passwordHash;
+        }
+
+        // Used when an account is read back from its binary record
+        void restoreState(long changeSequence, long lastActivity) {
+            this.changeSequence = changeSequence;
+            this.lastActivity = lastActivity;
+        }
+
+        double getReconciledBalance() {
+            return reconciledBalance;
+        }
+
+        long getReconciledSequence() {
+            return reconciledSequence;
+        }
+
+        // Only the Reconciler calls this; it is stored with the account so the Reconciler keeps nothing per account
+        void markReconciled(double balance, long sequence) {
+            this.reconciledBalance = balance;
+            this.reconciledSequence = sequence;
+        }
+
+        // Status changes that post nothing still move the change sequence, so incremental exports see them
+        void markChanged(long sequence) {
+            this.changeSequence = sequence;
+        }
+
+        // Only the Ledger calls this, under its lock. The sequence is published before the balance,
+        // so a reader that sees the new balance is guaranteed to see the new sequence as well.
+        void applyPosting(double amount, long sequence) {
+            this.changeSequence = sequence;
+            this.balance += amount;
+            this.lastActivity = System.currentTimeMillis();
+        }
+
+        public void addObserver(AccountObserver observer) {
+            observers.add(observer);
+        }
+
+        public void removeObserver(AccountObserver observer) {
+            observers.remove(observer);
+        }
+
+        void notifyObservers() {
+            for (AccountObserver observer : observers) {
+                observer.update(this);
+            }
+        }
+
+        private static byte[] newSalt() {
+            byte[] salt = new byte[16];
+            SALTS.nextBytes(salt);
+            return salt;
+        }
+
+        private static String hashPassword(String password, byte[] salt, int iterations) {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, PASSWORD_HASH_BITS);
+            try {
+                byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+                return PBKDF2 + ":" + iterations + ":" + Base64.getEncoder().encodeToString(salt)
+                        + ":" + Base64.getEncoder().encodeToString(hash);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e); // every JRE must provide it
+            } finally {
+                spec.clearPassword();
+            }
+        }
+
+        private static String legacyHash(String password, byte[] salt) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(salt);
+                byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+                return Base64.getEncoder().encodeToString(salt) + ":" + Base64.getEncoder().encodeToString(hash);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 is not available", e); // every JRE must provide it
+            }
+        }
+    }
+
+//***************************************** F A C T O R Y   M E T H O D *****************************************************************************************//
+
+    public static class DollarBankAccount extends BankAccount {
+        public final String currency = "USD";
+        public DollarBankAccount(String accountNumber, String accountHolder, double balance, String password) {
+            super(accountNumber, accountHolder, balance, password);
+            super.currency = currency;
+        }
+    }
+
+    public static class TengeBankAccount extends BankAccount {
+        public final String currency = "KZT";
+
+        public TengeBankAccount(String accountNumber, String accountHolder, double balance, String password) {
+            super(accountNumber, accountHolder, balance, password);
+            super.currency = currency;
+        }
+    }
+
+    public static class BankAccountFactory {
+        public static BankAccount createBankAccount(String type, String accountNumber, String accountHolder, double balance, String password) {
+            return switch (type.toLowerCase()) {
+                case "dollar" -> new DollarBankAccount(accountNumber, accountHolder, balance, password);
+                case "tenge" -> new TengeBankAccount(accountNumber, accountHolder, balance, password);
+                default -> throw new IllegalArgumentException("Invalid bank account type: " + type);
+            };
+        }
+    }
+}
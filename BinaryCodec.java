@@ -0,0 +1,508 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+
+import com.example.myjavafxapp.JournalEntry.Posting;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+//***************************************** B I N A R Y   W I R E   F O R M A T *****************************************************************************************//
+//
+// Every record starts with the same 8 byte header:
+//
+//   0  short  magic (0xBA5E)
+//   2  byte   format version
+//   3  byte   record type (ACCOUNT_RECORD / COMMAND_RECORD / ENTRY_RECORD)
+//   4  int    total record length in bytes, header included
+//
+// followed by the fixed-size fields of the record and then its strings, each as
+// UTF-8 bytes whose lengths sit in the fixed part (-1 means null). Because the
+// fixed fields are at known offsets, the readers at the bottom can pull a single
+// field straight out of the buffer without decoding the rest of the record.
+//
+// A reader accepts any version up to VERSION and always skips to the record
+// length, so fields appended by a newer writer are ignored instead of corrupting
+// the next record. All values use the buffer's byte order (big-endian unless the
+// caller changed it); a mismatch shows up as a bad magic.
+
+public final class BinaryCodec {
+
+    public static final short MAGIC = (short) 0xBA5E;
+    public static final byte VERSION = 4;
+
+    public static final byte ACCOUNT_RECORD = 1;
+    public static final byte COMMAND_RECORD = 2;
+    public static final byte ENTRY_RECORD = 3;
+
+    static final int HEADER_SIZE = 8;
+
+    // Account record. Version 2 added the last activity time and the change sequence after
+    // the version 1 fixed part, which moved the strings from offset 26 to 42. Since version 3
+    // the password string holds the salted password hash (BankAccount) instead of the password.
+    // Version 4 added the Reconciler's last verified balance and sequence, moving them to 58.
+    private static final int ACC_BALANCE = 8;
+    private static final int ACC_CURRENCY = 16;
+    private static final int ACC_FLAGS = 19;
+    private static final int ACC_NUMBER_LEN = 20;
+    private static final int ACC_HOLDER_LEN = 22;
+    private static final int ACC_PASSWORD_LEN = 24;
+    private static final int ACC_FIXED_SIZE_V1 = 26;
+    private static final int ACC_LAST_ACTIVITY = 26;
+    private static final int ACC_CHANGE_SEQUENCE = 34;
+    private static final int ACC_FIXED_SIZE_V2 = 42;
+    private static final int ACC_RECONCILED_BALANCE = 42;
+    private static final int ACC_RECONCILED_SEQUENCE = 50;
+    private static final int ACC_FIXED_SIZE = 58;
+
+    // Command record, unchanged since version 1
+    private static final int CMD_SEQUENCE = 8;
+    private static final int CMD_TIMESTAMP = 16;
+    private static final int CMD_AMOUNT = 24;
+    private static final int CMD_CREDITED = 32;
+    private static final int CMD_KIND = 40;
+    private static final int CMD_DEBIT_CURRENCY = 41;
+    private static final int CMD_CREDIT_CURRENCY = 44;
+    private static final int CMD_RESERVED = 47;
+    private static final int CMD_DEBIT_LEN = 48;
+    private static final int CMD_CREDIT_LEN = 50;
+    private static final int CMD_FIXED_SIZE = 52;
+
+    // Entry record (a JournalEntry), new in version 4: the leg count, then the command as a complete
+    // command record, then every leg as a system flag, currency, amount and account ID
+    private static final int ENT_LEG_COUNT = 8;
+    private static final int ENT_RESERVED = 10;
+    private static final int ENT_FIXED_SIZE = 12;
+    private static final int LEG_SYSTEM = 0;
+    private static final int LEG_CURRENCY = 1;
+    private static final int LEG_AMOUNT = 4;
+    private static final int LEG_ID_LEN = 12;
+    private static final int LEG_FIXED_SIZE = 14;
+
+    private static final byte FLAG_FROZEN = 1;
+    private static final byte FLAG_CLOSED = 2;
+
+    private static final short NULL_LENGTH = -1;
+
+    // Decoding a string has to go through a char[]; reuse one per thread instead of one per field
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[64]);
+
+    private BinaryCodec() {
+    }
+
+    //------------------------------------------------------------ Accounts ------------------------------------------------------------//
+
+    public static int accountSize(BankAccount account) {
+        return ACC_FIXED_SIZE + utf8Length(account.getAccountNumber())
+                + utf8Length(account.getAccountHolder()) + utf8Length(account.getPasswordHash());
+    }
+
+    // Writes the account at the buffer's position and advances it. Returns the number of bytes written.
+    public static int encodeAccount(BankAccount account, ByteBuffer buf) {
+        int size = accountSize(account);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        int start = buf.position();
+        putHeader(buf, start, ACCOUNT_RECORD, size);
+        buf.putDouble(start + ACC_BALANCE, account.getBalance());
+        putCurrency(buf, start + ACC_CURRENCY, account.getCurrency());
+        buf.put(start + ACC_FLAGS, (byte) ((account.isFrozen() ? FLAG_FROZEN : 0) | (account.isClosed() ? FLAG_CLOSED : 0)));
+        buf.putLong(start + ACC_LAST_ACTIVITY, account.getLastActivity());
+        buf.putLong(start + ACC_CHANGE_SEQUENCE, account.getChangeSequence());
+        buf.putDouble(start + ACC_RECONCILED_BALANCE, account.getReconciledBalance());
+        buf.putLong(start + ACC_RECONCILED_SEQUENCE, account.getReconciledSequence());
+
+        int at = start + ACC_FIXED_SIZE;
+        at = putString(buf, start + ACC_NUMBER_LEN, at, account.getAccountNumber());
+        at = putString(buf, start + ACC_HOLDER_LEN, at, account.getAccountHolder());
+        at = putString(buf, start + ACC_PASSWORD_LEN, at, account.getPasswordHash());
+        buf.position(at);
+        return size;
+    }
+
+    // Reads the account at the buffer's position and advances past the whole record.
+    public static BankAccount decodeAccount(ByteBuffer buf) {
+        int start = buf.position();
+        int length = checkHeader(buf, start, ACCOUNT_RECORD);
+        byte version = buf.get(start + 2);
+        int end = start + length;
+        checkFixedPart(start, length, accountFixedSize(version));
+
+        double balance = buf.getDouble(start + ACC_BALANCE);
+        String currency = getCurrency(buf, start + ACC_CURRENCY);
+
+        int at = start + accountFixedSize(version);
+        short numberLen = buf.getShort(start + ACC_NUMBER_LEN);
+        String accountNumber = getString(buf, at, numberLen, end);
+        at += Math.max(numberLen, 0);
+        short holderLen = buf.getShort(start + ACC_HOLDER_LEN);
+        String accountHolder = getString(buf, at, holderLen, end);
+        at += Math.max(holderLen, 0);
+        String password = getString(buf, at, buf.getShort(start + ACC_PASSWORD_LEN), end);
+
+        buf.position(end);
+        // Older records hold the password itself, which the factory hashes
+        BankAccount account = BankAccountFactory.createBankAccount(accountTypeOf(currency), accountNumber, accountHolder,
+                balance, version < 3 ? password : null);
+        if (version >= 3) {
+            account.restorePasswordHash(password);
+        }
+        byte flags = buf.get(start + ACC_FLAGS);
+        account.setFrozen((flags & FLAG_FROZEN) != 0);
+        if ((flags & FLAG_CLOSED) != 0) {
+            account.markClosed();
+        }
+        if (version >= 2) {
+            account.restoreState(buf.getLong(start + ACC_CHANGE_SEQUENCE), buf.getLong(start + ACC_LAST_ACTIVITY));
+        }
+        if (version >= 4) {
+            account.markReconciled(buf.getDouble(start + ACC_RECONCILED_BALANCE), buf.getLong(start + ACC_RECONCILED_SEQUENCE));
+        }
+        return account;
+    }
+
+    private static int accountFixedSize(byte version) {
+        return version == 1 ? ACC_FIXED_SIZE_V1 : version < 4 ? ACC_FIXED_SIZE_V2 : ACC_FIXED_SIZE;
+    }
+
+    private static String accountTypeOf(String currency) {
+        if ("USD".equals(currency)) {
+            return "dollar";
+        } else if ("KZT".equals(currency)) {
+            return "tenge";
+        }
+        throw new IllegalArgumentException("Unsupported account currency: " + currency);
+    }
+
+    //------------------------------------------------------------ Commands ------------------------------------------------------------//
+
+    public static int commandSize(TransactionCommand command) {
+        return CMD_FIXED_SIZE + utf8Length(command.getDebitAccount()) + utf8Length(command.getCreditAccount());
+    }
+
+    // Writes the command at the buffer's position and advances it. Returns the number of bytes written.
+    public static int encodeCommand(TransactionCommand command, ByteBuffer buf) {
+        int size = commandSize(command);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        int start = buf.position();
+        putHeader(buf, start, COMMAND_RECORD, size);
+        buf.putLong(start + CMD_SEQUENCE, command.getSequence());
+        buf.putLong(start + CMD_TIMESTAMP, command.getTimestamp());
+        buf.putDouble(start + CMD_AMOUNT, command.getAmount());
+        buf.putDouble(start + CMD_CREDITED, command.getCreditedAmount());
+        buf.put(start + CMD_KIND, (byte) command.getKind().ordinal());
+        putCurrency(buf, start + CMD_DEBIT_CURRENCY, command.getDebitCurrency());
+        putCurrency(buf, start + CMD_CREDIT_CURRENCY, command.getCreditCurrency());
+        buf.put(start + CMD_RESERVED, (byte) 0);
+
+        int at = start + CMD_FIXED_SIZE;
+        at = putString(buf, start + CMD_DEBIT_LEN, at, command.getDebitAccount());
+        at = putString(buf, start + CMD_CREDIT_LEN, at, command.getCreditAccount());
+        buf.position(at);
+        return size;
+    }
+
+    // Reads the command at the buffer's position and advances past the whole record.
+    public static TransactionCommand decodeCommand(ByteBuffer buf) {
+        int start = buf.position();
+        int length = checkHeader(buf, start, COMMAND_RECORD);
+        int end = start + length;
+        checkFixedPart(start, length, CMD_FIXED_SIZE);
+
+        int at = start + CMD_FIXED_SIZE;
+        short debitLen = buf.getShort(start + CMD_DEBIT_LEN);
+        String debitAccount = getString(buf, at, debitLen, end);
+        at += Math.max(debitLen, 0);
+        String creditAccount = getString(buf, at, buf.getShort(start + CMD_CREDIT_LEN), end);
+
+        TransactionCommand command = new TransactionCommand(
+                TransactionCommand.Kind.fromCode(buf.get(start + CMD_KIND)),
+                buf.getLong(start + CMD_SEQUENCE),
+                buf.getLong(start + CMD_TIMESTAMP),
+                debitAccount, creditAccount,
+                buf.getDouble(start + CMD_AMOUNT),
+                buf.getDouble(start + CMD_CREDITED),
+                getCurrency(buf, start + CMD_DEBIT_CURRENCY),
+                getCurrency(buf, start + CMD_CREDIT_CURRENCY));
+        buf.position(end);
+        return command;
+    }
+
+    //------------------------------------------------------------ Journal entries ------------------------------------------------------------//
+
+    public static int entrySize(JournalEntry entry) {
+        int size = ENT_FIXED_SIZE + commandSize(entry.getCommand());
+        for (Posting leg : entry.getLegs()) {
+            size += LEG_FIXED_SIZE + utf8Length(leg.getAccountID());
+        }
+        return size;
+    }
+
+    // Writes the entry at the buffer's position and advances it. Returns the number of bytes written.
+    public static int encodeEntry(JournalEntry entry, ByteBuffer buf) {
+        int size = entrySize(entry);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        int start = buf.position();
+        putHeader(buf, start, ENTRY_RECORD, size);
+        buf.putShort(start + ENT_LEG_COUNT, (short) entry.getLegs().size());
+        buf.putShort(start + ENT_RESERVED, (short) 0);
+        buf.position(start + ENT_FIXED_SIZE);
+        encodeCommand(entry.getCommand(), buf);
+
+        int at = buf.position();
+        for (Posting leg : entry.getLegs()) {
+            buf.put(at + LEG_SYSTEM, (byte) (leg.isSystem() ? 1 : 0));
+            putCurrency(buf, at + LEG_CURRENCY, leg.getCurrency());
+            buf.putDouble(at + LEG_AMOUNT, leg.getAmount());
+            at = putString(buf, at + LEG_ID_LEN, at + LEG_FIXED_SIZE, leg.getAccountID());
+        }
+        buf.position(at);
+        return size;
+    }
+
+    // Reads the entry at the buffer's position and advances past the whole record.
+    public static JournalEntry decodeEntry(ByteBuffer buf) {
+        int start = buf.position();
+        int length = checkHeader(buf, start, ENTRY_RECORD);
+        int end = start + length;
+        checkFixedPart(start, length, ENT_FIXED_SIZE);
+        short legCount = buf.getShort(start + ENT_LEG_COUNT);
+        if (legCount < 0) {
+            throw new IllegalArgumentException("Negative leg count in entry at " + start);
+        }
+
+        // The embedded command must end inside this record
+        int limit = buf.limit();
+        TransactionCommand command;
+        buf.limit(end).position(start + ENT_FIXED_SIZE);
+        try {
+            command = decodeCommand(buf);
+        } finally {
+            buf.limit(limit);
+        }
+
+        int at = buf.position();
+        List<Posting> legs = new ArrayList<>(legCount);
+        for (int i = 0; i < legCount; i++) {
+            if (at + LEG_FIXED_SIZE > end) {
+                throw new IllegalArgumentException("Leg " + i + " at " + at + " overruns its record");
+            }
+            short idLen = buf.getShort(at + LEG_ID_LEN);
+            String accountID = getString(buf, at + LEG_FIXED_SIZE, idLen, end);
+            legs.add(new Posting(accountID, getCurrency(buf, at + LEG_CURRENCY), buf.getDouble(at + LEG_AMOUNT),
+                    buf.get(at + LEG_SYSTEM) != 0));
+            at += LEG_FIXED_SIZE + Math.max(idLen, 0);
+        }
+        buf.position(end);
+        return new JournalEntry(command, legs);
+    }
+
+    //------------------------------------------------------- In-place field readers -------------------------------------------------------//
+    // These read one field of the record starting at offset without moving the buffer or allocating.
+
+    public static byte recordType(ByteBuffer buf, int offset) {
+        return buf.get(offset + 3);
+    }
+
+    public static int recordLength(ByteBuffer buf, int offset) {
+        return buf.getInt(offset + 4);
+    }
+
+    public static double accountBalance(ByteBuffer buf, int offset) {
+        return buf.getDouble(offset + ACC_BALANCE);
+    }
+
+    // Version 1 records carry no change sequence; they read as 0
+    public static long accountChangeSequence(ByteBuffer buf, int offset) {
+        return buf.get(offset + 2) == 1 ? 0 : buf.getLong(offset + ACC_CHANGE_SEQUENCE);
+    }
+
+    // Allocates the String, but decodes nothing else of the record
+    public static String accountNumber(ByteBuffer buf, int offset) {
+        return getString(buf, offset + accountFixedSize(buf.get(offset + 2)), buf.getShort(offset + ACC_NUMBER_LEN),
+                offset + recordLength(buf, offset));
+    }
+
+    public static long commandSequence(ByteBuffer buf, int offset) {
+        return buf.getLong(offset + CMD_SEQUENCE);
+    }
+
+    public static long commandTimestamp(ByteBuffer buf, int offset) {
+        return buf.getLong(offset + CMD_TIMESTAMP);
+    }
+
+    public static double commandAmount(ByteBuffer buf, int offset) {
+        return buf.getDouble(offset + CMD_AMOUNT);
+    }
+
+    public static double commandCreditedAmount(ByteBuffer buf, int offset) {
+        return buf.getDouble(offset + CMD_CREDITED);
+    }
+
+    //------------------------------------------------------------ Helpers ------------------------------------------------------------//
+
+    private static void putHeader(ByteBuffer buf, int start, byte type, int size) {
+        buf.putShort(start, MAGIC);
+        buf.put(start + 2, VERSION);
+        buf.put(start + 3, type);
+        buf.putInt(start + 4, size);
+    }
+
+    private static int checkHeader(ByteBuffer buf, int start, byte expectedType) {
+        if (buf.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Truncated record header at " + start);
+        }
+        if (buf.getShort(start) != MAGIC) {
+            throw new IllegalArgumentException("Bad magic at " + start);
+        }
+        byte version = buf.get(start + 2);
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported record version: " + version);
+        }
+        byte type = buf.get(start + 3);
+        if (type != expectedType) {
+            throw new IllegalArgumentException("Expected record type " + expectedType + " but found " + type);
+        }
+        int length = buf.getInt(start + 4);
+        if (length < HEADER_SIZE || length > buf.remaining()) {
+            throw new IllegalArgumentException("Truncated record at " + start + " (length " + length + ")");
+        }
+        return length;
+    }
+
+    private static void checkFixedPart(int start, int length, int fixedSize) {
+        if (length < fixedSize) {
+            throw new IllegalArgumentException("Record at " + start + " is shorter than its fixed fields (length " + length + ")");
+        }
+    }
+
+    // Currencies are ISO codes, so a fixed 3 ASCII bytes. A missing currency is written as zeros.
+    private static void putCurrency(ByteBuffer buf, int at, String currency) {
+        if (currency == null) {
+            buf.put(at, (byte) 0).put(at + 1, (byte) 0).put(at + 2, (byte) 0);
+            return;
+        }
+        if (currency.length() != 3) {
+            throw new IllegalArgumentException("Currency must be a 3 letter code: " + currency);
+        }
+        buf.put(at, (byte) currency.charAt(0));
+        buf.put(at + 1, (byte) currency.charAt(1));
+        buf.put(at + 2, (byte) currency.charAt(2));
+    }
+
+    private static String getCurrency(ByteBuffer buf, int at) {
+        byte a = buf.get(at);
+        byte b = buf.get(at + 1);
+        byte c = buf.get(at + 2);
+        if (a == 'U' && b == 'S' && c == 'D') {
+            return "USD";
+        } else if (a == 'K' && b == 'Z' && c == 'T') {
+            return "KZT";
+        } else if (a == 0 && b == 0 && c == 0) {
+            return null;
+        }
+        return new String(new char[]{(char) a, (char) b, (char) c});
+    }
+
+    // Writes the string's UTF-8 bytes at 'at' and its length at 'lengthAt'. Returns the position after the bytes.
+    private static int putString(ByteBuffer buf, int lengthAt, int at, String s) {
+        if (s == null) {
+            buf.putShort(lengthAt, NULL_LENGTH);
+            return at;
+        }
+        int start = at;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put(at++, (byte) c);
+            } else if (c < 0x800) {
+                buf.put(at++, (byte) (0xC0 | (c >> 6)));
+                buf.put(at++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put(at++, (byte) (0xF0 | (cp >> 18)));
+                buf.put(at++, (byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put(at++, (byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put(at++, (byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buf.put(at++, (byte) (0xE0 | (c >> 12)));
+                buf.put(at++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put(at++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        int length = at - start;
+        if (length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for wire format: " + length + " bytes");
+        }
+        buf.putShort(lengthAt, (short) length);
+        return at;
+    }
+
+    // Decodes the string of the given length at 'at'; its bytes must end by 'end', the end of the record
+    private static String getString(ByteBuffer buf, int at, int length, int end) {
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || at + length > end) {
+            throw new IllegalArgumentException("String of " + length + " bytes at " + at + " overruns its record");
+        }
+        char[] chars = SCRATCH.get();
+        if (chars.length < length) {
+            chars = new char[length];
+            SCRATCH.set(chars);
+        }
+        int n = 0;
+        int stringEnd = at + length;
+        while (at < stringEnd) {
+            int b = buf.get(at++) & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+                continue;
+            }
+            int continuation = b < 0xE0 ? 1 : b < 0xF0 ? 2 : 3;
+            if (at + continuation > stringEnd) {
+                throw new IllegalArgumentException("Truncated UTF-8 sequence at " + (at - 1));
+            }
+            if (b < 0xE0) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (buf.get(at++) & 0x3F));
+            } else if (b < 0xF0) {
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((buf.get(at++) & 0x3F) << 6) | (buf.get(at++) & 0x3F));
+            } else {
+                int cp = ((b & 0x07) << 18) | ((buf.get(at++) & 0x3F) << 12)
+                        | ((buf.get(at++) & 0x3F) << 6) | (buf.get(at++) & 0x3F);
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    static int utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
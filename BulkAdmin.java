@@ -0,0 +1,286 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.AccountBatchObserver;
+import com.example.myjavafxapp.BankCore.AccountEvent;
+import com.example.myjavafxapp.BankCore.BankAccount;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Admin operations over many accounts: freeze, unfreeze or close, either by a list of IDs or
+// by a filter over the whole store. Jobs run one at a time on a low-priority background thread
+// and walk the store in chunks of chunkSize accounts looked at; the accounts of a chunk that
+// match are changed and reported to the batch observers as one event.
+//
+// Jobs are throttled to accountsPerSecond accounts looked at, matching or not, so even a filter
+// that matches almost nothing pages in the store no faster than that and does not crowd out live
+// traffic. A job waits for its turn before it collects a chunk, not between collecting and
+// applying it. Closing takes the ledger lock once per account, never for a whole chunk, so a
+// transfer waits for at most one close. A filter is tested once while walking the store and again
+// under the ledger lock right before the change, so an account that stopped matching in between
+// is left alone.
+public class BulkAdmin {
+
+    public enum Operation {
+        FREEZE(AccountEvent.FROZEN), UNFREEZE(AccountEvent.UNFROZEN), CLOSE(AccountEvent.CLOSED);
+
+        private final AccountEvent event;
+
+        Operation(AccountEvent event) {
+            this.event = event;
+        }
+    }
+
+    private final Map<String, BankAccount> accounts;
+    private final Ledger ledger;
+    private final int chunkSize;
+    private final long nanosPerAccount;
+    private final List<AccountBatchObserver> observers = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bulk-admin");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Set<Job> unfinished = ConcurrentHashMap.newKeySet();
+    private long nextFreeNanos; // rate limiter state, only touched by the job thread
+
+    public BulkAdmin(Map<String, BankAccount> accounts, Ledger ledger, int chunkSize, double accountsPerSecond) {
+        if (chunkSize <= 0 || !(accountsPerSecond > 0)) {
+            throw new IllegalArgumentException("Chunk size and rate must be positive.");
+        }
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.chunkSize = chunkSize;
+        this.nanosPerAccount = (long) (TimeUnit.SECONDS.toNanos(1) / accountsPerSecond);
+    }
+
+    public static Predicate<BankAccount> zeroBalance() {
+        return account -> Math.abs(account.getBalance()) < Reconciler.TOLERANCE;
+    }
+
+    public static Predicate<BankAccount> inactiveFor(Duration duration) {
+        return account -> System.currentTimeMillis() - account.getLastActivity() >= duration.toMillis();
+    }
+
+    public void addObserver(AccountBatchObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(AccountBatchObserver observer) {
+        observers.remove(observer);
+    }
+
+    public Job submit(Operation operation, Collection<String> accountIDs) {
+        List<String> ids = new ArrayList<>(accountIDs);
+        Job job = new Job(operation);
+        execute(job, () -> {
+            for (int from = 0; from < ids.size() && !job.cancelled; from += chunkSize) {
+                awaitTurn(job);
+                List<BankAccount> chunk = new ArrayList<>(chunkSize);
+                for (String id : ids.subList(from, Math.min(from + chunkSize, ids.size()))) {
+                    BankAccount account = accounts.get(id);
+                    if (account != null) {
+                        chunk.add(account);
+                    } else {
+                        job.skipped++;
+                    }
+                }
+                charge(Math.min(chunkSize, ids.size() - from));
+                process(job, chunk, account -> true);
+            }
+        });
+        return job;
+    }
+
+    public Job submit(Operation operation, Predicate<BankAccount> filter) {
+        Job job = new Job(operation);
+        execute(job, () -> {
+            // The store's iterator tolerates concurrent updates, so the walk never blocks live traffic
+            Iterator<BankAccount> it = accounts.values().iterator();
+            while (it.hasNext() && !job.cancelled) {
+                awaitTurn(job);
+                List<BankAccount> chunk = new ArrayList<>();
+                int scanned = 0;
+                while (it.hasNext() && scanned < chunkSize) {
+                    BankAccount account = it.next();
+                    scanned++;
+                    if (filter.test(account)) {
+                        chunk.add(account);
+                    }
+                }
+                charge(scanned);
+                process(job, chunk, filter);
+            }
+        });
+        return job;
+    }
+
+    // Cancels every job and waits for the one in progress to stop after its chunk. Not shutdownNow():
+    // interrupting a job reading the store would close the account file's channel under every lookup.
+    public void shutdown() {
+        executor.shutdown();
+        for (Job job : unfinished) {
+            job.cancel();
+        }
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void execute(Job job, Job.Body body) {
+        unfinished.add(job);
+        try {
+            executor.execute(() -> {
+                try {
+                    job.run(body);
+                } finally {
+                    unfinished.remove(job);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            unfinished.remove(job);
+            throw e;
+        }
+    }
+
+    private void process(Job job, List<BankAccount> chunk, Predicate<BankAccount> condition) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<BankAccount> changed = new ArrayList<>(chunk.size());
+        for (BankAccount account : chunk) {
+            if (apply(job.operation, account, condition)) {
+                changed.add(account);
+            } else {
+                job.skipped++;
+            }
+        }
+        job.processed += changed.size();
+        job.chunks++;
+        if (!changed.isEmpty()) {
+            List<BankAccount> batch = Collections.unmodifiableList(changed);
+            for (AccountBatchObserver observer : observers) {
+                observer.update(job.operation.event, batch);
+            }
+        }
+    }
+
+    private boolean apply(Operation operation, BankAccount account, Predicate<BankAccount> condition) {
+        switch (operation) {
+            case FREEZE -> {
+                return ledger.setFrozenIf(account, true, condition);
+            }
+            case UNFREEZE -> {
+                return ledger.setFrozenIf(account, false, condition);
+            }
+            case CLOSE -> {
+                // Same steps as deleting a single client: pay out through the ledger, then drop it
+                if (accounts.get(account.getAccountNumber()) != account || !ledger.closeIf(account, condition)) {
+                    return false;
+                }
+                accounts.remove(account.getAccountNumber(), account);
+            }
+        }
+        return true;
+    }
+
+    // Spaces chunks out so the job never runs faster than the configured rate on average: wait until
+    // the previous chunks are paid for, then charge each chunk for the accounts it looked at. Waits on
+    // the job, so cancelling it ends the wait.
+    private void awaitTurn(Job job) throws InterruptedException {
+        synchronized (job) {
+            long now;
+            while (!job.cancelled && nextFreeNanos > (now = System.nanoTime())) {
+                TimeUnit.NANOSECONDS.timedWait(job, nextFreeNanos - now);
+            }
+        }
+    }
+
+    private void charge(int permits) {
+        nextFreeNanos = Math.max(nextFreeNanos, System.nanoTime()) + permits * nanosPerAccount;
+    }
+
+    public static final class Job {
+        private final Operation operation;
+        private final CompletableFuture<Job> completion = new CompletableFuture<>();
+        private volatile int processed;
+        private volatile int skipped;
+        private volatile int chunks;
+        private volatile boolean cancelled;
+
+        private Job(Operation operation) {
+            this.operation = operation;
+        }
+
+        private interface Body {
+            void run() throws InterruptedException;
+        }
+
+        private void run(Body body) {
+            try {
+                if (!cancelled) {
+                    body.run();
+                }
+                completion.complete(this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completion.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            } catch (Error e) {
+                // Thrown by an observer, say; whoever waits on the job must still hear of it
+                completion.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        // Accounts actually changed (frozen, unfrozen or closed)
+        public int getProcessed() {
+            return processed;
+        }
+
+        // Accounts not found or already in the requested state
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        // Stops the job after the chunk in progress
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        public CompletableFuture<Job> completion() {
+            return completion;
+        }
+
+        @Override
+        public String toString() {
+            return operation + ": " + processed + " accounts in " + chunks + " chunks, " + skipped + " skipped"
+                    + (cancelled ? " (cancelled)" : "");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.AccountEvent;
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Bulk admin checks over a tiered store too small to keep the accounts in memory: chunk events,
+// the filter tested again under the ledger lock, throttling of a walk that matches nothing, and
+// cancelling and shutting down without breaking the store. Exits with status 1 on the first failure.
+// Run with: java com.example.myjavafxapp.BulkAdminCheck
+public class BulkAdminCheck {
+
+    private static final int HOT_ACCOUNTS = 100;
+    private static final int CHUNK_SIZE = 50;
+    private static final double FAST = 1_000_000; // accounts per second, for jobs that should not wait
+
+    private static int checks;
+
+    public static void main(String[] args) {
+        try {
+            chunkEvents();
+            filterCheckedUnderLock();
+            throttledWalk();
+            cancelAndShutdown();
+        } catch (RuntimeException | AssertionError | IOException | InterruptedException | ExecutionException e) {
+            System.out.println("FAILED after " + checks + " checks: " + e);
+            e.printStackTrace(System.out);
+            System.exit(1);
+        }
+        System.out.println("OK, " + checks + " checks passed");
+    }
+
+    private static void chunkEvents() throws IOException, InterruptedException, ExecutionException {
+        try (Bank bank = new Bank(FAST)) {
+            int n = 1_000;
+            for (int i = 0; i < n; i++) {
+                bank.open("B" + i, i % 4 == 0 ? 0 : 10);
+            }
+            List<List<BankAccount>> closed = new ArrayList<>();
+            bank.bulkAdmin.addObserver((event, accounts) -> {
+                if (event == AccountEvent.CLOSED) {
+                    closed.add(accounts);
+                }
+            });
+            BulkAdmin.Job job = bank.bulkAdmin.submit(BulkAdmin.Operation.CLOSE, BulkAdmin.zeroBalance()).completion().get();
+            int events = 0;
+            Set<String> ids = new HashSet<>();
+            for (List<BankAccount> chunk : closed) {
+                check(!chunk.isEmpty() && chunk.size() <= CHUNK_SIZE, "chunk size " + chunk.size());
+                for (BankAccount account : chunk) {
+                    check(account.isClosed() && ids.add(account.getAccountNumber()), "closed once");
+                }
+                events++;
+            }
+            check(job.getProcessed() == n / 4 && ids.size() == n / 4, "every zero balance closed: " + job);
+            check(job.getChunks() == events, "one event per chunk");
+            check(bank.store.size() == n - n / 4 && !bank.store.containsKey("B0") && bank.store.containsKey("B1"), "closed ones removed");
+
+            // By ID: unknown IDs and accounts already frozen are skipped
+            List<String> freeze = new ArrayList<>(List.of("B1", "B2", "missing", "B0"));
+            bank.ledger.setFrozen(bank.store.get("B2"), true);
+            job = bank.bulkAdmin.submit(BulkAdmin.Operation.FREEZE, freeze).completion().get();
+            check(job.getProcessed() == 1 && job.getSkipped() == 3 && bank.store.get("B1").isFrozen(), "freeze by ID: " + job);
+        }
+    }
+
+    // The filter passes while the store is walked, then the account changes before the job gets to it:
+    // tested again under the ledger lock, it no longer matches and is left alone
+    private static void filterCheckedUnderLock() throws IOException, InterruptedException, ExecutionException {
+        try (Bank bank = new Bank(FAST)) {
+            int n = 200;
+            for (int i = 0; i < n; i++) {
+                bank.open("F" + i, 0);
+            }
+            Set<String> tested = Collections.synchronizedSet(new HashSet<>());
+            Predicate<BankAccount> zeroBalance = BulkAdmin.zeroBalance();
+            Predicate<BankAccount> filter = account -> {
+                boolean matches = zeroBalance.test(account);
+                String accountID = account.getAccountNumber();
+                if (matches && accountID.hashCode() % 3 == 0 && tested.add(accountID)) {
+                    bank.ledger.deposit(account, 5); // as if a customer paid in right after the walk passed
+                }
+                return matches;
+            };
+            BulkAdmin.Job job = bank.bulkAdmin.submit(BulkAdmin.Operation.CLOSE, filter).completion().get();
+            check(!tested.isEmpty() && job.getSkipped() == tested.size() && job.getProcessed() == n - tested.size(),
+                    "changed accounts skipped: " + job);
+            for (String accountID : tested) {
+                BankAccount account = bank.store.get(accountID);
+                check(account != null && !account.isClosed() && account.getBalance() == 5, "changed account kept");
+            }
+            check(bank.store.size() == tested.size(), "the rest closed");
+        }
+    }
+
+    // A filter that matches nothing still pays for every account it looks at
+    private static void throttledWalk() throws IOException, InterruptedException, ExecutionException {
+        double rate = 20_000;
+        try (Bank bank = new Bank(rate)) {
+            int n = 4_000;
+            for (int i = 0; i < n; i++) {
+                bank.open("W" + i, 10);
+            }
+            long start = System.nanoTime();
+            BulkAdmin.Job job = bank.bulkAdmin.submit(BulkAdmin.Operation.FREEZE, BulkAdmin.zeroBalance()).completion().get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double least = (n - CHUNK_SIZE) / rate; // the first chunk goes at once
+            check(job.getProcessed() == 0 && job.getChunks() == 0, "nothing matched: " + job);
+            check(seconds >= least * 0.9, String.format("walk throttled: %.3f s, at least %.3f s expected", seconds, least));
+        }
+    }
+
+    // Cancelling ends a job waiting for its turn at once; shutdown cancels what is left without
+    // interrupting a job that is reading the store, which would close the account file under it
+    private static void cancelAndShutdown() throws IOException, InterruptedException, ExecutionException {
+        try (Bank bank = new Bank(CHUNK_SIZE)) { // one chunk a second
+            int n = 1_000;
+            for (int i = 0; i < n; i++) {
+                bank.open("S" + i, 0);
+            }
+            CountDownLatch firstChunk = new CountDownLatch(1);
+            bank.bulkAdmin.addObserver((event, accounts) -> firstChunk.countDown());
+            BulkAdmin.Job job = bank.bulkAdmin.submit(BulkAdmin.Operation.FREEZE, BulkAdmin.zeroBalance());
+            check(firstChunk.await(10, TimeUnit.SECONDS), "first chunk");
+            long start = System.nanoTime();
+            job.cancel();
+            job.completion().get(2, TimeUnit.SECONDS);
+            check((System.nanoTime() - start) / 1e9 < 0.5, "cancel ends the wait");
+            check(job.getProcessed() < n && job.toString().endsWith("(cancelled)"), "stopped early: " + job);
+
+            BulkAdmin.Job running = bank.bulkAdmin.submit(BulkAdmin.Operation.CLOSE, BulkAdmin.zeroBalance());
+            BulkAdmin.Job queued = bank.bulkAdmin.submit(BulkAdmin.Operation.CLOSE, BulkAdmin.zeroBalance());
+            start = System.nanoTime();
+            bank.bulkAdmin.shutdown();
+            check((System.nanoTime() - start) / 1e9 < 2 && running.isDone() && queued.isDone(), "shutdown cancels every job");
+            check(!running.completion().isCompletedExceptionally() && !queued.completion().isCompletedExceptionally(),
+                    "jobs end normally");
+            check(queued.getProcessed() == 0, "a queued job never starts");
+            for (int i = 0; i < n; i += 97) {
+                bank.store.get("S" + i); // a closed channel would throw here
+            }
+            checks++;
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new AssertionError("cancelled job did not finish", e);
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    private static final class Bank implements AutoCloseable {
+        private final TieredAccountStore store = TieredAccountStore.createTemporary(HOT_ACCOUNTS);
+        private final Ledger ledger = new Ledger();
+        private final BulkAdmin bulkAdmin;
+
+        Bank(double accountsPerSecond) {
+            ledger.addObserver(store);
+            bulkAdmin = new BulkAdmin(store, ledger, CHUNK_SIZE, accountsPerSecond);
+        }
+
+        void open(String accountID, double balance) {
+            ledger.open(BankAccountFactory.createBankAccount("dollar", accountID, "Holder " + accountID, balance, null), store);
+        }
+
+        @Override
+        public void close() throws IOException {
+            bulkAdmin.shutdown();
+            store.close();
+            ledger.getJournal().close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Compares BinaryCodec against a plain JSON encoding of the same records.
+// Run with: java com.example.myjavafxapp.CodecBenchmark [records] [rounds]
+public class CodecBenchmark {
+
+    private static long sink; // keeps the JIT from dropping the decoded results
+
+    public static void main(String[] args) {
+        System.setProperty("bank.passwordIterations", "1"); // times the codec, not the password hashing
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        BankAccount[] accounts = new BankAccount[records];
+        TransactionCommand[] commands = new TransactionCommand[records];
+        for (int i = 0; i < records; i++) {
+            String type = i % 2 == 0 ? "dollar" : "tenge";
+            accounts[i] = BankAccountFactory.createBankAccount(type, "ACC" + i, "Holder Name " + i, i * 10.5, "pw" + i);
+            commands[i] = TransactionCommand.transfer(i, System.currentTimeMillis(), "ACC" + i, "ACC" + (i + 1),
+                    i + 0.25, (i + 0.25) * 500, "USD", "KZT");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(records * 192);
+
+        // Warm-up so both paths are compiled before measuring
+        for (int r = 0; r < rounds; r++) {
+            binaryAccounts(accounts, buf);
+            jsonAccounts(accounts);
+            binaryCommands(commands, buf);
+            jsonCommands(commands);
+        }
+
+        report("account  binary", records, rounds, () -> binaryAccounts(accounts, buf));
+        report("account  json  ", records, rounds, () -> jsonAccounts(accounts));
+        report("command  binary", records, rounds, () -> binaryCommands(commands, buf));
+        report("command  json  ", records, rounds, () -> jsonCommands(commands));
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private interface Round {
+        long run(); // returns the bytes produced
+    }
+
+    private static void report(String name, int records, int rounds, Round round) {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            bytes = round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s  %8.1f ns/record (encode+decode)  %6.1f bytes/record%n",
+                name, (double) elapsed / ((long) records * rounds), (double) bytes / records);
+    }
+
+    private static long binaryAccounts(BankAccount[] accounts, ByteBuffer buf) {
+        buf.clear();
+        for (BankAccount account : accounts) {
+            BinaryCodec.encodeAccount(account, buf);
+        }
+        long bytes = buf.position();
+        buf.flip();
+        while (buf.hasRemaining()) {
+            sink += (long) BinaryCodec.decodeAccount(buf).getBalance();
+        }
+        return bytes;
+    }
+
+    private static long binaryCommands(TransactionCommand[] commands, ByteBuffer buf) {
+        buf.clear();
+        for (TransactionCommand command : commands) {
+            BinaryCodec.encodeCommand(command, buf);
+        }
+        long bytes = buf.position();
+        buf.flip();
+        while (buf.hasRemaining()) {
+            sink += BinaryCodec.decodeCommand(buf).getSequence();
+        }
+        return bytes;
+    }
+
+    private static long jsonAccounts(BankAccount[] accounts) {
+        long bytes = 0;
+        StringBuilder sb = new StringBuilder(128);
+        for (BankAccount account : accounts) {
+            sb.setLength(0);
+            sb.append("{\"accountNumber\":\"").append(account.getAccountNumber())
+                    .append("\",\"accountHolder\":\"").append(account.getAccountHolder())
+                    .append("\",\"balance\":").append(account.getBalance())
+                    .append(",\"currency\":\"").append(account.getCurrency())
+                    .append("\",\"password\":\"").append(account.getPasswordHash()).append("\"}");
+            byte[] wire = sb.toString().getBytes(StandardCharsets.UTF_8);
+            bytes += wire.length;
+
+            String json = new String(wire, StandardCharsets.UTF_8);
+            String currency = field(json, "currency");
+            BankAccount decoded = BankAccountFactory.createBankAccount("USD".equals(currency) ? "dollar" : "tenge",
+                    field(json, "accountNumber"), field(json, "accountHolder"),
+                    Double.parseDouble(field(json, "balance")), null);
+            decoded.restorePasswordHash(field(json, "password"));
+            sink += (long) decoded.getBalance();
+        }
+        return bytes;
+    }
+
+    private static long jsonCommands(TransactionCommand[] commands) {
+        long bytes = 0;
+        StringBuilder sb = new StringBuilder(192);
+        for (TransactionCommand command : commands) {
+            sb.setLength(0);
+            sb.append("{\"kind\":\"").append(command.getKind())
+                    .append("\",\"sequence\":").append(command.getSequence())
+                    .append(",\"timestamp\":").append(command.getTimestamp())
+                    .append(",\"debitAccount\":\"").append(command.getDebitAccount())
+                    .append("\",\"creditAccount\":\"").append(command.getCreditAccount())
+                    .append("\",\"amount\":").append(command.getAmount())
+                    .append(",\"creditedAmount\":").append(command.getCreditedAmount())
+                    .append(",\"debitCurrency\":\"").append(command.getDebitCurrency())
+                    .append("\",\"creditCurrency\":\"").append(command.getCreditCurrency()).append("\"}");
+            byte[] wire = sb.toString().getBytes(StandardCharsets.UTF_8);
+            bytes += wire.length;
+
+            String json = new String(wire, StandardCharsets.UTF_8);
+            TransactionCommand decoded = new TransactionCommand(
+                    TransactionCommand.Kind.valueOf(field(json, "kind")),
+                    Long.parseLong(field(json, "sequence")),
+                    Long.parseLong(field(json, "timestamp")),
+                    field(json, "debitAccount"), field(json, "creditAccount"),
+                    Double.parseDouble(field(json, "amount")),
+                    Double.parseDouble(field(json, "creditedAmount")),
+                    field(json, "debitCurrency"), field(json, "creditCurrency"));
+            sink += decoded.getSequence();
+        }
+        return bytes;
+    }
+
+    // Minimal lookup for the flat objects above; enough for a fair comparison, not a general parser
+    private static String field(String json, String name) {
+        int key = json.indexOf("\"" + name + "\":");
+        int start = key + name.length() + 3;
+        if (json.charAt(start) == '"') {
+            return json.substring(start + 1, json.indexOf('"', start + 1));
+        }
+        int end = start;
+        while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+            end++;
+        }
+        return json.substring(start, end);
+    }
+}
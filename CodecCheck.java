@@ -0,0 +1,369 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+import com.example.myjavafxapp.JournalEntry.Posting;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+// Round-trip and corruption checks for BinaryCodec. Exits with status 1 on the first failure.
+// Run with: java com.example.myjavafxapp.CodecCheck
+public class CodecCheck {
+
+    private static final String[] NAMES = {
+            "Plain Name",
+            "\u04D8\u043B\u0438\u044F \u041D\u04B1\u0440\u043B\u0430\u043D\u049B\u044B\u0437\u044B",  // Kazakh, two byte UTF-8
+            "\u674E\u5C0F\u9F99",            // three byte UTF-8
+            "Smile \uD83D\uDE00 Holder", // surrogate pair, four byte UTF-8
+            "",
+            null,
+    };
+
+    private static int checks;
+
+    public static void main(String[] args) {
+        // Every hash records its iteration count, so a low one goes through the same code, much faster
+        System.setProperty("bank.passwordIterations", "1000");
+        try {
+            accountsRoundTrip();
+            passwordHashes();
+            olderVersions();
+            commandsRoundTrip();
+            entriesRoundTrip();
+            recordsBackToBack();
+            inPlaceReaders();
+            corruptRecords();
+        } catch (RuntimeException | AssertionError | GeneralSecurityException e) {
+            System.out.println("FAILED after " + checks + " checks: " + e);
+            e.printStackTrace(System.out);
+            System.exit(1);
+        }
+        System.out.println("OK, " + checks + " checks passed");
+    }
+
+    private static void accountsRoundTrip() {
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        for (String name : NAMES) {
+            for (String password : new String[]{"secret", "\u043F\u0430\u0440\u043E\u043B\u044C", null}) {
+                for (String type : new String[]{"dollar", "tenge"}) {
+                    BankAccount account = BankAccountFactory.createBankAccount(type, "ACC-" + name, name, -12.75, password);
+                    account.setFrozen(name != null && name.isEmpty());
+                    if ("dollar".equals(type)) {
+                        account.markClosed();
+                    }
+                    account.restoreState(1L << 40, 1_700_000_000_123L);
+                    account.markReconciled(-12.5, 1L << 39);
+
+                    buf.clear();
+                    int size = BinaryCodec.encodeAccount(account, buf);
+                    check(size == BinaryCodec.accountSize(account) && size == buf.position(), "account size");
+                    buf.flip();
+                    BankAccount copy = BinaryCodec.decodeAccount(buf);
+                    check(!buf.hasRemaining(), "decode stops at the record end");
+                    checkSameAccount(account, copy, true);
+                    check(copy.getReconciledBalance() == -12.5 && copy.getReconciledSequence() == 1L << 39, "reconciled state");
+                    check(Objects.equals(account.getPasswordHash(), copy.getPasswordHash()), "password hash");
+                    checkPassword(copy, password);
+                }
+            }
+        }
+    }
+
+    // A hash keeps the iteration count and salt it was made with, so one made with another count, or the
+    // salted SHA-256 hash of a record written before PBKDF2, still verifies
+    private static void passwordHashes() throws GeneralSecurityException {
+        BankAccount account = BankAccountFactory.createBankAccount("dollar", "PW-1", "Holder", 1, "secret");
+        String[] parts = account.getPasswordHash().split(":");
+        check(parts.length == 4 && parts[0].equals("pbkdf2-sha256") && parts[1].equals("1000"), "hash parameters stored");
+        check(!account.getPasswordHash().equals(
+                BankAccountFactory.createBankAccount("dollar", "PW-2", "Holder", 1, "secret").getPasswordHash()), "salted");
+
+        byte[] salt = new byte[16];
+        byte[] derived = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                .generateSecret(new PBEKeySpec("secret".toCharArray(), salt, 2_000, 256)).getEncoded();
+        account.restorePasswordHash("pbkdf2-sha256:2000:" + Base64.getEncoder().encodeToString(salt)
+                + ":" + Base64.getEncoder().encodeToString(derived));
+        checkPassword(account, "secret");
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(salt);
+        byte[] legacy = digest.digest("secret".getBytes(StandardCharsets.UTF_8));
+        account.restorePasswordHash(Base64.getEncoder().encodeToString(salt) + ":" + Base64.getEncoder().encodeToString(legacy));
+        checkPassword(account, "secret");
+
+        account.restorePasswordHash("md5:" + Base64.getEncoder().encodeToString(salt) + ":x:y:z");
+        check(!account.checkPassword("secret"), "unknown hash format rejected");
+    }
+
+    // Version 1 records lack the last activity and change sequence, so their strings start at offset 26;
+    // versions 2 and 3 lack the reconciled state, so theirs start at 42. Versions 1 and 2 hold the
+    // password itself, which decoding hashes.
+    private static void olderVersions() {
+        for (int version = 1; version <= 3; version++) {
+            for (String name : NAMES) {
+                for (String password : new String[]{"pw", "\u043F\u0430\u0440\u043E\u043B\u044C", null}) {
+                    BankAccount account = BankAccountFactory.createBankAccount("tenge", "OLD-1", name, 500, password);
+                    account.setFrozen(true);
+                    account.restoreState(99, 1_600_000_000_000L);
+                    account.markReconciled(450, 98);
+                    ByteBuffer old = olderVersion(account, version, password);
+                    BankAccount copy = BinaryCodec.decodeAccount(old);
+                    checkSameAccount(account, copy, version >= 2);
+                    check(copy.getReconciledBalance() == 0 && copy.getReconciledSequence() == 0,
+                            "version " + version + " has no reconciled state");
+                    checkPassword(copy, password);
+                    check(!old.hasRemaining(), "decode stops at the record end");
+                    long sequence = version == 1 ? 0 : 99;
+                    check(copy.getChangeSequence() == sequence, "version " + version + " change sequence");
+                    check(BinaryCodec.accountChangeSequence(old, 0) == sequence, "in-place version " + version + " change sequence");
+                    check(Objects.equals("OLD-1", BinaryCodec.accountNumber(old, 0)), "in-place version " + version + " account number");
+                }
+            }
+        }
+    }
+
+    private static void commandsRoundTrip() {
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        TransactionCommand[] commands = {
+                TransactionCommand.deposit(1, 10, "ACC-1", 100, "USD"),
+                TransactionCommand.withdraw(2, 20, "\u04D8\u043B\u0438\u044F-1", 0.01, "KZT"),
+                TransactionCommand.close(4, 40, "ACC-1", 0, "USD"),
+                TransactionCommand.transfer(3, 30, "\u674E-1", "\uD83D\uDE00-2", 2.5, 1250, "USD", "KZT"),
+                new TransactionCommand(TransactionCommand.Kind.TRANSFER, Long.MAX_VALUE, -1, null, null,
+                        Double.MIN_VALUE, -0.0, null, null),
+        };
+        for (TransactionCommand command : commands) {
+            buf.clear();
+            int size = BinaryCodec.encodeCommand(command, buf);
+            check(size == BinaryCodec.commandSize(command) && size == buf.position(), "command size");
+            buf.flip();
+            check(command.equals(BinaryCodec.decodeCommand(buf)), "command round trip: " + command);
+            check(!buf.hasRemaining(), "decode stops at the record end");
+        }
+    }
+
+    private static void entriesRoundTrip() {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        JournalEntry[] entries = {
+                new JournalEntry(TransactionCommand.deposit(1, 10, "ACC-1", 100, "USD"), List.of(
+                        new Posting("CASH:USD", "USD", -100, true),
+                        new Posting("ACC-1", "USD", 100, false))),
+                new JournalEntry(TransactionCommand.transfer(2, 20, "\u674E-1", "\uD83D\uDE00-2", 2.5, 1250, "USD", "KZT"), List.of(
+                        new Posting("\u674E-1", "USD", -2.5, false),
+                        new Posting("FX:USD", "USD", 2.5, true),
+                        new Posting("FX:KZT", "KZT", -1250, true),
+                        new Posting("\uD83D\uDE00-2", "KZT", 1250, false))),
+                new JournalEntry(TransactionCommand.close(3, 30, "ACC-1", 0, "USD"), List.of()),
+                new JournalEntry(TransactionCommand.withdraw(4, 40, null, 1, null), List.of(
+                        new Posting(null, null, -0.0, false))),
+        };
+        for (JournalEntry entry : entries) {
+            buf.clear();
+            int size = BinaryCodec.encodeEntry(entry, buf);
+            check(size == BinaryCodec.entrySize(entry) && size == buf.position(), "entry size");
+            buf.flip();
+            JournalEntry copy = BinaryCodec.decodeEntry(buf);
+            check(!buf.hasRemaining(), "decode stops at the record end");
+            check(entry.getCommand().equals(copy.getCommand()), "entry command: " + entry);
+            check(entry.getLegs().size() == copy.getLegs().size(), "leg count: " + entry);
+            for (int i = 0; i < entry.getLegs().size(); i++) {
+                Posting leg = entry.getLegs().get(i);
+                Posting legCopy = copy.getLegs().get(i);
+                check(Objects.equals(leg.getAccountID(), legCopy.getAccountID())
+                        && Objects.equals(leg.getCurrency(), legCopy.getCurrency())
+                        && Double.compare(leg.getAmount(), legCopy.getAmount()) == 0
+                        && leg.isSystem() == legCopy.isSystem(), "leg " + i + " of " + entry);
+            }
+        }
+    }
+
+    private static void recordsBackToBack() {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        for (int i = 0; i < NAMES.length; i++) {
+            BinaryCodec.encodeAccount(BankAccountFactory.createBankAccount("dollar", "A" + i, NAMES[i], i, "pw"), buf);
+            BinaryCodec.encodeCommand(TransactionCommand.deposit(i + 1, i, "A" + i, i, "USD"), buf);
+        }
+        buf.flip();
+        for (int i = 0; i < NAMES.length; i++) {
+            check(BinaryCodec.recordType(buf, buf.position()) == BinaryCodec.ACCOUNT_RECORD, "record type");
+            check(Objects.equals(NAMES[i], BinaryCodec.decodeAccount(buf).getAccountHolder()), "holder " + i);
+            check(BinaryCodec.decodeCommand(buf).getSequence() == i + 1, "command " + i);
+        }
+        check(!buf.hasRemaining(), "all records consumed");
+    }
+
+    private static void inPlaceReaders() {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        BankAccount account = BankAccountFactory.createBankAccount("dollar", "\u04D8\u043B\u0438\u044F-7", "Holder", 42.5, "pw");
+        account.restoreState(77, 5);
+        BinaryCodec.encodeAccount(account, buf);
+        check(BinaryCodec.accountBalance(buf, 0) == 42.5, "in-place balance");
+        check(BinaryCodec.accountChangeSequence(buf, 0) == 77, "in-place change sequence");
+        check("\u04D8\u043B\u0438\u044F-7".equals(BinaryCodec.accountNumber(buf, 0)), "in-place account number");
+        check(BinaryCodec.recordLength(buf, 0) == buf.position(), "in-place record length");
+    }
+
+    private static void corruptRecords() {
+        BankAccount account = BankAccountFactory.createBankAccount("dollar", "ACC-9", "\u674E\u5C0F\u9F99", 1, "pw");
+        ByteBuffer good = ByteBuffer.allocate(256);
+        BinaryCodec.encodeAccount(account, good);
+        good.flip();
+        int length = good.limit();
+
+        // A string length that runs past the record, even though the buffer itself is longer
+        ByteBuffer longer = ByteBuffer.allocate(512);
+        longer.put(good.duplicate());
+        longer.putShort(22, (short) (BinaryCodec.utf8Length("\u674E\u5C0F\u9F99") + 40));
+        longer.clear();
+        rejects(longer, "holder length past the record end");
+
+        ByteBuffer negative = copy(good);
+        negative.putShort(20, (short) -2);
+        rejects(negative, "negative string length");
+
+        // Cut the last byte of the password off the record: the password now overruns it
+        ByteBuffer shortened = copy(good);
+        shortened.putInt(4, length - 1);
+        rejects(shortened, "record shorter than its strings");
+
+        ByteBuffer tooShort = copy(good);
+        tooShort.putInt(4, 20);
+        rejects(tooShort, "record shorter than its fixed fields");
+
+        // Shrink the holder by one byte so its last three byte character is cut in half
+        ByteBuffer split = copy(good);
+        split.putShort(22, (short) (BinaryCodec.utf8Length("\u674E\u5C0F\u9F99") - 1));
+        rejects(split, "UTF-8 sequence cut by the string length");
+
+        ByteBuffer magic = copy(good);
+        magic.putShort(0, (short) 0x1234);
+        rejects(magic, "bad magic");
+
+        ByteBuffer version = copy(good);
+        version.put(2, (byte) (BinaryCodec.VERSION + 1));
+        rejects(version, "newer version");
+
+        ByteBuffer truncated = copy(good);
+        truncated.limit(length - 1);
+        rejects(truncated, "buffer shorter than the record");
+
+        ByteBuffer command = ByteBuffer.allocate(256);
+        BinaryCodec.encodeCommand(TransactionCommand.deposit(1, 1, "ACC-9", 1, "USD"), command);
+        command.flip();
+        command.putShort(50, (short) 100);
+        try {
+            BinaryCodec.decodeCommand(command);
+            throw new AssertionError("accepted credit account length past the record end");
+        } catch (IllegalArgumentException expected) {
+            checks++;
+        }
+
+        JournalEntry entry = new JournalEntry(TransactionCommand.deposit(1, 1, "ACC-9", 1, "USD"), List.of(
+                new Posting("CASH:USD", "USD", -1, true), new Posting("ACC-9", "USD", 1, false)));
+        ByteBuffer goodEntry = ByteBuffer.allocate(256);
+        BinaryCodec.encodeEntry(entry, goodEntry);
+        goodEntry.flip();
+        int commandLength = BinaryCodec.commandSize(entry.getCommand());
+
+        ByteBuffer moreLegs = copy(goodEntry);
+        moreLegs.putShort(8, (short) 3);
+        rejectsEntry(moreLegs, "more legs than the record holds");
+
+        ByteBuffer negativeLegs = copy(goodEntry);
+        negativeLegs.putShort(8, (short) -1);
+        rejectsEntry(negativeLegs, "negative leg count");
+
+        // The embedded command claims to run past the entry that holds it
+        ByteBuffer longCommand = ByteBuffer.allocate(512);
+        longCommand.put(goodEntry.duplicate());
+        longCommand.putInt(12 + 4, goodEntry.limit() + 8);
+        longCommand.clear();
+        rejectsEntry(longCommand, "command longer than its entry");
+
+        ByteBuffer legID = copy(goodEntry);
+        legID.putShort(12 + commandLength + 12, (short) 200);
+        rejectsEntry(legID, "leg account ID past the record end");
+    }
+
+    private static void rejectsEntry(ByteBuffer buf, String what) {
+        try {
+            BinaryCodec.decodeEntry(buf);
+        } catch (IllegalArgumentException expected) {
+            checks++;
+            return;
+        }
+        throw new AssertionError("accepted " + what);
+    }
+
+    // The account as an older writer stored it: the fixed part of that version, then the account
+    // number and holder, then the password in the clear (versions 1 and 2) or its hash
+    private static ByteBuffer olderVersion(BankAccount account, int version, String password) {
+        ByteBuffer current = ByteBuffer.allocate(256);
+        BinaryCodec.encodeAccount(account, current);
+        int fixed = version == 1 ? 26 : 42;
+        int names = BinaryCodec.utf8Length(account.getAccountNumber()) + BinaryCodec.utf8Length(account.getAccountHolder());
+        String stored = version < 3 ? password : account.getPasswordHash();
+        byte[] raw = stored == null ? new byte[0] : stored.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer old = ByteBuffer.allocate(fixed + names + raw.length);
+        old.put(current.array(), 0, fixed).put(current.array(), 58, names).put(raw).flip();
+        old.put(2, (byte) version);
+        old.putInt(4, old.limit());
+        old.putShort(24, stored == null ? -1 : (short) raw.length);
+        return old;
+    }
+
+    private static void checkPassword(BankAccount account, String password) {
+        if (password == null) {
+            check(account.getPasswordHash() == null && !account.checkPassword(""), "no password");
+            return;
+        }
+        check(account.checkPassword(password), "password accepted");
+        check(!account.checkPassword(password + "x"), "wrong password rejected");
+        check(!account.getPasswordHash().equals(password), "password not stored in the clear");
+    }
+
+    private static void checkSameAccount(BankAccount expected, BankAccount actual, boolean withState) {
+        check(Objects.equals(expected.getAccountNumber(), actual.getAccountNumber()), "account number");
+        check(Objects.equals(expected.getAccountHolder(), actual.getAccountHolder()), "holder " + expected.getAccountHolder());
+        check(Objects.equals(expected.getCurrency(), actual.getCurrency()), "currency");
+        check(Double.compare(expected.getBalance(), actual.getBalance()) == 0, "balance");
+        check(expected.isFrozen() == actual.isFrozen(), "frozen");
+        check(expected.isClosed() == actual.isClosed(), "closed");
+        if (withState) {
+            check(expected.getChangeSequence() == actual.getChangeSequence(), "change sequence");
+            check(expected.getLastActivity() == actual.getLastActivity(), "last activity");
+        }
+
+    }
+
+    private static void rejects(ByteBuffer buf, String what) {
+        try {
+            BinaryCodec.decodeAccount(buf);
+        } catch (IllegalArgumentException expected) {
+            checks++;
+            return;
+        }
+        throw new AssertionError("accepted " + what);
+    }
+
+    private static ByteBuffer copy(ByteBuffer buf) {
+        ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+        copy.put(buf.duplicate()).flip();
+        return copy;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+        checks++;
+    }
+}
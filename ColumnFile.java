@@ -0,0 +1,313 @@
+package com.example.myjavafxapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+//*********************************************** C O L U M N A R   F I L E   F O R M A T *****************************************************************************//
+//
+// One chunk of an export: a fixed number of rows stored column by column, each column
+// compressed on its own. Values of one column look alike (account IDs, currencies, rising
+// sequence numbers), so they compress far better together than row by row, and a reader
+// that needs two columns only inflates those two.
+//
+//   0  int    magic ("BCOL")
+//   4  byte   format version
+//   5  byte   reserved
+//   6  short  column count
+//   8  int    row count
+//
+// then for every column:
+//
+//      short  name length, then the name as UTF-8
+//      byte   type (Type.ordinal())
+//      int    encoded length
+//      int    compressed length, then the encoded values deflated
+//
+// Encodings: LONG as the zigzag varint of the difference to the previous row, DOUBLE as
+// 8 byte IEEE 754, STRING as varint (UTF-8 length + 1) then the bytes (0 means null),
+// BOOLEAN as one byte. Multi-byte values are big-endian.
+public final class ColumnFile {
+
+    public static final int MAGIC = 0x42434F4C;
+    public static final byte VERSION = 1;
+
+    public enum Type { LONG, DOUBLE, STRING, BOOLEAN }
+
+    private ColumnFile() {
+    }
+
+    // Builds one file; every column must get exactly the row count given up front
+    public static final class Writer {
+        private final int rows;
+        private final List<String> names = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<Integer> encodedLengths = new ArrayList<>();
+        private final List<ByteArrayOutputStream> columns = new ArrayList<>();
+
+        public Writer(int rows) {
+            this.rows = rows;
+        }
+
+        public Writer longColumn(String name, long[] values) throws IOException {
+            Column column = begin(name, Type.LONG, values.length);
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                long delta = values[i] - previous;
+                column.varint((delta << 1) ^ (delta >> 63));
+                previous = values[i];
+            }
+            return column.end();
+        }
+
+        public Writer doubleColumn(String name, double[] values) throws IOException {
+            Column column = begin(name, Type.DOUBLE, values.length);
+            for (int i = 0; i < rows; i++) {
+                column.out.writeDouble(values[i]);
+            }
+            return column.end();
+        }
+
+        public Writer stringColumn(String name, String[] values) throws IOException {
+            Column column = begin(name, Type.STRING, values.length);
+            for (int i = 0; i < rows; i++) {
+                if (values[i] == null) {
+                    column.varint(0);
+                } else {
+                    byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                    column.varint(bytes.length + 1L);
+                    column.out.write(bytes);
+                }
+            }
+            return column.end();
+        }
+
+        public Writer booleanColumn(String name, boolean[] values) throws IOException {
+            Column column = begin(name, Type.BOOLEAN, values.length);
+            for (int i = 0; i < rows; i++) {
+                column.out.writeBoolean(values[i]);
+            }
+            return column.end();
+        }
+
+        // Writes the file and returns its size in bytes
+        public long write(Path path) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeByte(0);
+                out.writeShort(names.size());
+                out.writeInt(rows);
+                for (int i = 0; i < names.size(); i++) {
+                    byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(name.length);
+                    out.write(name);
+                    out.writeByte(types.get(i).ordinal());
+                    out.writeInt(encodedLengths.get(i));
+                    out.writeInt(columns.get(i).size());
+                    columns.get(i).writeTo(out);
+                }
+                return out.size();
+            }
+        }
+
+        private Column begin(String name, Type type, int length) {
+            if (length < rows) {
+                throw new IllegalArgumentException("Column " + name + " has " + length + " values for " + rows + " rows.");
+            }
+            return new Column(name, type);
+        }
+
+        private final class Column {
+            private final String name;
+            private final Type type;
+            private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            private final Deflater deflater = new Deflater(Deflater.BEST_SPEED); // export throughput over file size
+            private final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new DeflaterOutputStream(compressed, deflater, 8192)));
+
+            Column(String name, Type type) {
+                this.name = name;
+                this.type = type;
+            }
+
+            void varint(long value) throws IOException {
+                while ((value & ~0x7FL) != 0) {
+                    out.writeByte((int) (value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                out.writeByte((int) value);
+            }
+
+            Writer end() throws IOException {
+                int encoded = out.size();
+                out.close();
+                deflater.end();
+                names.add(name);
+                types.add(type);
+                encodedLengths.add(encoded);
+                columns.add(compressed);
+                return Writer.this;
+            }
+        }
+    }
+
+    // Reads a whole file back; chunks are small enough to hold in memory
+    public static Table read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a column file: " + path);
+            }
+            byte version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported column file version: " + version);
+            }
+            in.readByte();
+            int columnCount = in.readUnsignedShort();
+            int rows = in.readInt();
+            Map<String, Object> columns = new LinkedHashMap<>();
+            for (int c = 0; c < columnCount; c++) {
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                int typeCode = in.readUnsignedByte();
+                if (typeCode >= Type.values().length) {
+                    throw new IllegalArgumentException("Unknown column type: " + typeCode);
+                }
+                Type type = Type.values()[typeCode];
+                byte[] encoded = new byte[in.readInt()];
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                inflate(compressed, encoded);
+                columns.put(new String(name, StandardCharsets.UTF_8), decode(type, new DataInputStream(
+                        new ByteArrayInputStream(encoded)), rows));
+            }
+            return new Table(rows, columns);
+        }
+    }
+
+    private static void inflate(byte[] compressed, byte[] encoded) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int at = 0;
+            while (at < encoded.length && !inflater.finished()) {
+                int n = inflater.inflate(encoded, at, encoded.length - at);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                at += n;
+            }
+            if (at != encoded.length) {
+                throw new IllegalArgumentException("Column is shorter than its declared length.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Object decode(Type type, DataInputStream in, int rows) throws IOException {
+        switch (type) {
+            case LONG -> {
+                long[] values = new long[rows];
+                long previous = 0;
+                for (int i = 0; i < rows; i++) {
+                    long zigzag = varint(in);
+                    previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                    values[i] = previous;
+                }
+                return values;
+            }
+            case DOUBLE -> {
+                double[] values = new double[rows];
+                for (int i = 0; i < rows; i++) {
+                    values[i] = in.readDouble();
+                }
+                return values;
+            }
+            case STRING -> {
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    long length = varint(in);
+                    if (length > 0) {
+                        byte[] bytes = new byte[(int) (length - 1)];
+                        in.readFully(bytes);
+                        values[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+                return values;
+            }
+            default -> {
+                boolean[] values = new boolean[rows];
+                for (int i = 0; i < rows; i++) {
+                    values[i] = in.readBoolean();
+                }
+                return values;
+            }
+        }
+    }
+
+    private static long varint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    public static final class Table {
+        private final int rows;
+        private final Map<String, Object> columns;
+
+        Table(int rows, Map<String, Object> columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public List<String> getColumnNames() {
+            return new ArrayList<>(columns.keySet());
+        }
+
+        public long[] longs(String name) {
+            return column(name, long[].class);
+        }
+
+        public double[] doubles(String name) {
+            return column(name, double[].class);
+        }
+
+        public String[] strings(String name) {
+            return column(name, String[].class);
+        }
+
+        public boolean[] booleans(String name) {
+            return column(name, boolean[].class);
+        }
+
+        private <T> T column(String name, Class<T> type) {
+            Object values = columns.get(name);
+            if (!type.isInstance(values)) {
+                throw new IllegalArgumentException("No " + type.getComponentType() + " column named " + name);
+            }
+            return type.cast(values);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.myjavafxapp;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -9,16 +10,33 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
 
+import com.example.myjavafxapp.BankCore.*;
+
+import java.time.Duration;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 
 public class EnhancedBankManagementSystem extends Application {
 
-    private final HashMap<String, BankAccount> accounts = new HashMap<>();
+    private static final long RECONCILE_PERIOD_MILLIS = 5_000;
+    private static final int RECONCILE_SWEEP_EVERY = 12; // full sweep about once a minute
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final double BULK_ACCOUNTS_PER_SECOND = 2_000; // keeps bulk jobs out of the way of live transfers
+    private static final int HOT_ACCOUNTS = 100_000; // accounts kept in memory; the rest are read from disk on demand
+    private static final int EXPORT_CHUNK_ROWS = 50_000;
+    private static final int VIEW_PAGE_SIZE = 1_000; // accounts shown, and so held in memory, at a time
+
+    private final TieredAccountStore accounts = TieredAccountStore.createTemporary(HOT_ACCOUNTS);
+    private final Ledger ledger = new Ledger(); // All balance changes are posted here
+    private final Reconciler reconciler = new Reconciler(ledger, accounts, RECONCILE_SWEEP_EVERY);
+    private final BulkAdmin bulkAdmin = new BulkAdmin(accounts, ledger, BULK_CHUNK_SIZE, BULK_ACCOUNTS_PER_SECOND);
+    private final Exporter exporter = new Exporter(accounts, ledger, Runtime.getRuntime().availableProcessors(),
+            EXPORT_CHUNK_ROWS);
 
     private State currentState; // Current state of the system
     private Button btnClient = new Button("Client"); // Initialize btnClient early
@@ -59,10 +77,33 @@ public class EnhancedBankManagementSystem extends Application {
         scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/style.css")).toExternalForm());
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        reconciler.addListener(discrepancy -> System.out.println("Reconciliation: " + discrepancy));
+        reconciler.start(RECONCILE_PERIOD_MILLIS);
+        bulkAdmin.addObserver(new BatchLogObserver());
+        ledger.addObserver(accounts); // Changed accounts are written back to disk in the background
+    }
+
+    @Override
+    public void stop() {
+        reconciler.stop();
+        bulkAdmin.shutdown();
+        try {
+            accounts.close();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not close the account store: " + e);
+        }
+        try {
+            ledger.getJournal().close();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not close the journal: " + e);
+        }
     }
 
+    // One lookup: for a cold account it is the only disk read
     private boolean authenticate(String accountNumber, String password) {
-        return accounts.containsKey(accountNumber) && accounts.get(accountNumber).password.equals(password);
+        BankAccount account = accounts.get(accountNumber);
+        return account != null && account.checkPassword(password);
     }
 
 
@@ -148,13 +189,15 @@ public class EnhancedBankManagementSystem extends Application {
             try {
                 double amount = Double.parseDouble(amountStr);
                 if (amount > 0) {
-                    currentClient.balance += amount;
-                    showAlert("Deposit", "Successfully deposited: " + amount + "\nNew Balance: " + currentClient.balance, Alert.AlertType.INFORMATION);
+                    ledger.deposit(currentClient, amount);
+                    showAlert("Deposit", "Successfully deposited: " + amount + "\nNew Balance: " + currentClient.getBalance(), Alert.AlertType.INFORMATION);
                 } else {
                     showAlert("Deposit Error", "Please enter a positive amount.", Alert.AlertType.ERROR);
                 }
             } catch (NumberFormatException e) {
                 showAlert("Input Error", "Invalid amount. Please enter a valid number.", Alert.AlertType.ERROR);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                showAlert("Deposit Error", e.getMessage(), Alert.AlertType.ERROR); // e.g. an infinite amount or a frozen account
             }
         });
     }
@@ -170,45 +213,23 @@ public class EnhancedBankManagementSystem extends Application {
             try {
                 double amount = Double.parseDouble(amountStr);
                 if (amount > 0) {
-                    if (currentClient.balance >= amount) {
-                        currentClient.balance -= amount;
-                        showAlert("Withdraw", "Successfully withdraw: " + amount + "\nNew Balance: " + currentClient.balance, Alert.AlertType.INFORMATION);
+                    if (currentClient.getBalance() >= amount) {
+                        ledger.withdraw(currentClient, amount);
+                        showAlert("Withdraw", "Successfully withdraw: " + amount + "\nNew Balance: " + currentClient.getBalance(), Alert.AlertType.INFORMATION);
                     } else {
-                        showAlert("Withdraw Error", "Insufficient funds. Available balance: " + currentClient.balance, Alert.AlertType.ERROR);
+                        showAlert("Withdraw Error", "Insufficient funds. Available balance: " + currentClient.getBalance(), Alert.AlertType.ERROR);
                     }
                 } else {
                     showAlert("Withdraw Error", "Please enter a positive amount.", Alert.AlertType.ERROR);
                 }
             } catch (NumberFormatException e) {
                 showAlert("Input Error", "Invalid amount. Please enter a valid number.", Alert.AlertType.ERROR);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                showAlert("Withdraw Error", e.getMessage(), Alert.AlertType.ERROR); // e.g. an infinite amount or a frozen account
             }
         });
     }
 
-//************************************************* A D A P T E R    P A T T E R N *************************************************************************************//
-
-    public interface CurrencyAdapter {
-        double convert(double amount);
-    }
-
-    public static class DollarToTengeAdapter implements CurrencyAdapter {
-        private static final double EXCHANGE_RATE = 500;
-
-        @Override
-        public double convert(double amount) {
-            return amount * EXCHANGE_RATE;
-        }
-    }
-
-    public static class TengeToDollarAdapter implements CurrencyAdapter {
-        private static final double EXCHANGE_RATE = 500;
-
-        @Override
-        public double convert(double amount) {
-            return amount / EXCHANGE_RATE;
-        }
-    }
-
     private void transferFunds(BankAccount senderAccount) {
         TextInputDialog dialog = new TextInputDialog();
         dialog.setTitle("Transfer Funds");
@@ -217,8 +238,8 @@ public class EnhancedBankManagementSystem extends Application {
 
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(recipientId -> {
-            if (accounts.containsKey(recipientId)) {
-                BankAccount recipientAccount = accounts.get(recipientId);
+            BankAccount recipientAccount = accounts.get(recipientId);
+            if (recipientAccount != null) {
 
                 TextInputDialog amountDialog = new TextInputDialog();
                 amountDialog.setTitle("Transfer Funds");
@@ -230,37 +251,31 @@ public class EnhancedBankManagementSystem extends Application {
                     try {
                         double amount = Double.parseDouble(amountStr);
                         if (amount > 0) {
-                            if (senderAccount.balance >= amount) {
-                                double convertedAmount = amount;
-
-                                if (!senderAccount.currency.equals(recipientAccount.currency)) {
-                                    CurrencyAdapter adapter;
-                                    if (senderAccount.currency.equals("USD") && recipientAccount.currency.equals("KZT")) {
-                                        adapter = new DollarToTengeAdapter();
-                                    } else if (senderAccount.currency.equals("KZT") && recipientAccount.currency.equals("USD")) {
-                                        adapter = new TengeToDollarAdapter();
-                                    } else {
-                                        showAlert("Transfer Error", "Unsupported currency conversion.", Alert.AlertType.ERROR);
-                                        return;
-                                    }
-                                    convertedAmount = adapter.convert(amount);
+                            if (senderAccount.getBalance() >= amount) {
+                                if (!senderAccount.getCurrency().equals(recipientAccount.getCurrency())
+                                        && BankCore.adapterFor(senderAccount.getCurrency(), recipientAccount.getCurrency()) == null) {
+                                    showAlert("Transfer Error", "Unsupported currency conversion.", Alert.AlertType.ERROR);
+                                    return;
                                 }
 
-                                senderAccount.balance -= amount;
-                                recipientAccount.balance += convertedAmount;
+                                // The ledger converts through the CurrencyAdapter and books the FX legs
+                                JournalEntry entry = ledger.transfer(senderAccount, recipientAccount, amount);
+                                double convertedAmount = entry.getCommand().getCreditedAmount();
                                 showAlert("Transfer Successful",
                                         String.format("Transferred: %.2f %s to %s (Name: %s)\nRecipient received: %.2f %s",
-                                                amount, senderAccount.currency, recipientId, recipientAccount.accountHolder,
-                                                convertedAmount, recipientAccount.currency),
+                                                amount, senderAccount.getCurrency(), recipientId, recipientAccount.getAccountHolder(),
+                                                convertedAmount, recipientAccount.getCurrency()),
                                         Alert.AlertType.INFORMATION);
                             } else {
-                                showAlert("Transfer Error", "Insufficient funds. Available balance: " + senderAccount.balance, Alert.AlertType.ERROR);
+                                showAlert("Transfer Error", "Insufficient funds. Available balance: " + senderAccount.getBalance(), Alert.AlertType.ERROR);
                             }
                         } else {
                             showAlert("Transfer Error", "Please enter a positive amount.", Alert.AlertType.ERROR);
                         }
                     } catch (NumberFormatException e) {
                         showAlert("Input Error", "Invalid amount. Please enter a valid number.", Alert.AlertType.ERROR);
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        showAlert("Transfer Error", e.getMessage(), Alert.AlertType.ERROR); // e.g. an infinite amount or a frozen account
                     }
                 });
             } else {
@@ -272,7 +287,7 @@ public class EnhancedBankManagementSystem extends Application {
 //***************************************************************************************************************************************************************************//
 
     private void checkBalance(BankAccount currentClient) {
-        showAlert("Balance", "Your current balance is: " + currentClient.balance, Alert.AlertType.INFORMATION);
+        showAlert("Balance", "Your current balance is: " + currentClient.getBalance(), Alert.AlertType.INFORMATION);
     }
 
     private VBox createMenuBar(Stage primaryStage) {
@@ -350,9 +365,11 @@ public class EnhancedBankManagementSystem extends Application {
     }
 
     private void registerBankAccount(String accountID, BankAccount bankAccount){
+        Ledger.checkOpening(bankAccount); // Reject a bad opening balance or details too long to store
+        accounts.checkStorable(bankAccount); // before anything is announced or booked
         bankAccount.notifyObservers(); // Notified all observers
 
-        accounts.put(accountID, bankAccount);
+        ledger.open(bankAccount, accounts); // Book the initial balance and store the account in one step
     }
     private void openRegistrationForm() {
         Stage registrationStage = new Stage();
@@ -484,15 +501,21 @@ public class EnhancedBankManagementSystem extends Application {
 
         Button btnViewClients = createButton("View All Clients", "-fx-background-color: #17a2b8; -fx-text-fill: white;");
         Button btnDeleteClient = createButton("Delete Client", "-fx-background-color: #dc3545; -fx-text-fill: white;");
+        Button btnBulkOperations = createButton("Bulk Operations", "-fx-background-color: #ffc107; -fx-text-fill: white;");
+        Button btnStorageStats = createButton("Storage Stats", "-fx-background-color: #6f42c1; -fx-text-fill: white;");
+        Button btnExport = createButton("Export for Reporting", "-fx-background-color: #20c997; -fx-text-fill: white;");
         Button btnBack = createButton("Back to Menu", "-fx-background-color: #6c757d; -fx-text-fill: white;");
 
         btnViewClients.setOnAction(e -> viewClients());
         btnDeleteClient.setOnAction(e -> deleteClient());
+        btnBulkOperations.setOnAction(e -> openBulkOperations());
+        btnStorageStats.setOnAction(e -> showStorageStats());
+        btnExport.setOnAction(e -> exportForReporting());
         btnBack.setOnAction(e -> adminStage.close());
 
-        layout.getChildren().addAll(title, btnViewClients, btnDeleteClient, btnBack);
+        layout.getChildren().addAll(title, btnViewClients, btnDeleteClient, btnBulkOperations, btnStorageStats, btnExport, btnBack);
 
-        Scene scene = new Scene(layout, 400, 400);
+        Scene scene = new Scene(layout, 400, 590);
         adminStage.setScene(scene);
         adminStage.show();
     }
@@ -504,6 +527,7 @@ public class EnhancedBankManagementSystem extends Application {
         return button;
     }
 
+    // Shows the store one page at a time: every account listed is loaded, so the table never holds more than a page
     private void viewClients() {
         Stage viewStage = new Stage();
         viewStage.setTitle("All Clients");
@@ -514,34 +538,200 @@ public class EnhancedBankManagementSystem extends Application {
 
         TableView<BankAccount> tableView = new TableView<>();
         TableColumn<BankAccount, String> colAccountNumber = new TableColumn<>("Account ID");
-        colAccountNumber.setCellValueFactory(cellData -> cellData.getValue().accountNumberProperty());
+        colAccountNumber.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getAccountNumber()));
 
         TableColumn<BankAccount, String> colAccountHolder = new TableColumn<>("Account Holder");
-        colAccountHolder.setCellValueFactory(cellData -> cellData.getValue().accountHolderProperty());
+        colAccountHolder.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getAccountHolder()));
 
         TableColumn<BankAccount, Double> colBalance = new TableColumn<>("Balance");
-        colBalance.setCellValueFactory(cellData -> cellData.getValue().balanceProperty().asObject());
+        colBalance.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getBalance()).asObject());
 
         TableColumn<BankAccount, String> colCurrency = new TableColumn<>("Currency");
-        colCurrency.setCellValueFactory(cellData -> cellData.getValue().currencyProperty());
+        colCurrency.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getCurrency()));
+
+        TableColumn<BankAccount, String> colStatus = new TableColumn<>("Status");
+        colStatus.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().isFrozen() ? "Frozen" : "Active"));
 
-        tableView.getColumns().addAll(colAccountNumber, colAccountHolder, colBalance, colCurrency);
-        tableView.setItems(javafx.collections.FXCollections.observableArrayList(accounts.values()));
+        tableView.getColumns().addAll(colAccountNumber, colAccountHolder, colBalance, colCurrency, colStatus);
 
+        Label lblPage = new Label();
+        Button btnFirst = createButton("First Page", "-fx-background-color: #6c757d; -fx-text-fill: white;");
+        Button btnNext = createButton("Next Page", "-fx-background-color: #28a745; -fx-text-fill: white;");
         Button btnClose = createButton("Close", "-fx-background-color: #007bff; -fx-text-fill: white;");
+
+        // The walk streams over the store, so it is kept between pages rather than started over
+        List<Iterator<BankAccount>> walk = new ArrayList<>(List.of(accounts.values().iterator()));
+        int[] shown = new int[1];
+        Runnable showNextPage = () -> {
+            Iterator<BankAccount> it = walk.get(0);
+            List<BankAccount> page = new ArrayList<>(VIEW_PAGE_SIZE);
+            while (page.size() < VIEW_PAGE_SIZE && it.hasNext()) {
+                page.add(it.next());
+            }
+            tableView.setItems(javafx.collections.FXCollections.observableArrayList(page));
+            lblPage.setText(page.isEmpty() ? "No accounts"
+                    : "Accounts " + (shown[0] + 1) + "-" + (shown[0] + page.size()) + " of about " + accounts.size());
+            shown[0] += page.size();
+            btnNext.setDisable(!it.hasNext());
+        };
+        btnNext.setOnAction(e -> showNextPage.run());
+        btnFirst.setOnAction(e -> {
+            walk.set(0, accounts.values().iterator());
+            shown[0] = 0;
+            showNextPage.run();
+        });
         btnClose.setOnAction(e -> viewStage.close());
+        showNextPage.run();
 
-        layout.getChildren().addAll(tableView, btnClose);
+        HBox paging = new HBox(10, btnFirst, btnNext, lblPage);
+        paging.setAlignment(Pos.CENTER);
+        layout.getChildren().addAll(tableView, paging, btnClose);
         Scene scene = new Scene(layout, 600, 400);
         viewStage.setScene(scene);
         viewStage.show();
     }
 
+    private void showStorageStats() {
+        TieredAccountStore.Stats stats = accounts.getStats();
+        showAlert("Storage Stats",
+                String.format("Accounts: %d\nIn memory: %d of %d\nWaiting to be written: %d\n"
+                                + "Hit rate: %.1f%% (%d hits, %d misses)\nDisk load: %.1f us average, %.1f us max",
+                        stats.getAccounts(), stats.getHot(), stats.getHotCapacity(), stats.getDirty(),
+                        stats.getHitRate() * 100, stats.getHits(), stats.getMisses(),
+                        stats.getMissMicros(), stats.getMaxMissMicros()),
+                Alert.AlertType.INFORMATION);
+    }
+
+    // Runs off the FX thread: a full export of a large store takes a while
+    private void exportForReporting() {
+        TextInputDialog dialog = new TextInputDialog("exports");
+        dialog.setTitle("Export for Reporting");
+        dialog.setHeaderText("Only changes since the last export in this directory are written.");
+        dialog.setContentText("Directory:");
+
+        dialog.showAndWait().ifPresent(directory -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    Exporter.Result result = exporter.export(Path.of(directory), false);
+                    Platform.runLater(() -> showAlert("Export Complete", result.toString(), Alert.AlertType.INFORMATION));
+                } catch (IOException | RuntimeException ex) {
+                    Platform.runLater(() -> showAlert("Export Error", String.valueOf(ex.getMessage()), Alert.AlertType.ERROR));
+                }
+            }, "export");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private void openBulkOperations() {
+        Stage bulkStage = new Stage();
+        bulkStage.setTitle("Bulk Operations");
+
+        VBox layout = new VBox(15);
+        layout.setPadding(new Insets(15));
+        layout.setAlignment(Pos.CENTER);
+
+        Label title = new Label("Bulk Client Operations");
+        title.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+
+        ComboBox<String> operationComboBox = new ComboBox<>();
+        operationComboBox.getItems().addAll("Freeze", "Unfreeze", "Close");
+        operationComboBox.setPromptText("Select Operation");
+        operationComboBox.setPrefWidth(300);
+
+        ComboBox<String> targetComboBox = new ComboBox<>();
+        targetComboBox.getItems().addAll("Account IDs", "Zero balance", "Inactive for days");
+        targetComboBox.setPromptText("Select Clients");
+        targetComboBox.setPrefWidth(300);
+
+        TextArea txtAccountIDs = new TextArea();
+        txtAccountIDs.setPromptText("Account IDs, separated by commas or new lines");
+        txtAccountIDs.setPrefSize(300, 100);
+
+        TextField txtDays = new TextField();
+        txtDays.setPromptText("Days without activity");
+        txtDays.setPrefWidth(300);
+
+        Label lblStatus = new Label("No job running.");
+        Button btnRun = createButton("Run", "-fx-background-color: #28a745; -fx-text-fill: white;");
+        Button btnCancelJob = createButton("Cancel Job", "-fx-background-color: #dc3545; -fx-text-fill: white;");
+        Button btnClose = createButton("Close", "-fx-background-color: #6c757d; -fx-text-fill: white;");
+        btnCancelJob.setDisable(true);
+
+        BulkAdmin.Job[] runningJob = new BulkAdmin.Job[1];
+        btnRun.setOnAction(e -> {
+            String operation = operationComboBox.getValue();
+            String target = targetComboBox.getValue();
+            if (operation == null || target == null) {
+                showAlert("Error", "Select an operation and which clients it applies to.", Alert.AlertType.ERROR);
+                return;
+            }
+            BulkAdmin.Operation op = BulkAdmin.Operation.valueOf(operation.toUpperCase());
+
+            BulkAdmin.Job job;
+            switch (target) {
+                case "Account IDs" -> {
+                    List<String> ids = new ArrayList<>();
+                    for (String id : txtAccountIDs.getText().split("[,\\s]+")) {
+                        if (!id.isEmpty()) {
+                            ids.add(id);
+                        }
+                    }
+                    if (ids.isEmpty()) {
+                        showAlert("Error", "Enter at least one Account ID.", Alert.AlertType.ERROR);
+                        return;
+                    }
+                    job = bulkAdmin.submit(op, ids);
+                }
+                case "Zero balance" -> job = bulkAdmin.submit(op, BulkAdmin.zeroBalance());
+                default -> {
+                    try {
+                        long days = Long.parseLong(txtDays.getText().trim());
+                        job = bulkAdmin.submit(op, BulkAdmin.inactiveFor(Duration.ofDays(days)));
+                    } catch (NumberFormatException ex) {
+                        showAlert("Error", "Days must be a whole number.", Alert.AlertType.ERROR);
+                        return;
+                    }
+                }
+            }
+
+            // Progress arrives per chunk on the job thread; the UI is only touched on the FX thread
+            AccountBatchObserver progress = (event, bankAccounts) ->
+                    Platform.runLater(() -> lblStatus.setText("Running... " + job));
+            bulkAdmin.addObserver(progress);
+            runningJob[0] = job;
+            btnRun.setDisable(true);
+            btnCancelJob.setDisable(false);
+            lblStatus.setText("Running... " + job);
+            job.completion().whenComplete((done, error) -> {
+                bulkAdmin.removeObserver(progress);
+                Platform.runLater(() -> {
+                    lblStatus.setText(error == null ? "Done. " + job : "Failed: " + error.getMessage());
+                    btnRun.setDisable(false);
+                    btnCancelJob.setDisable(true);
+                });
+            });
+        });
+        btnCancelJob.setOnAction(e -> {
+            if (runningJob[0] != null) {
+                runningJob[0].cancel();
+            }
+        });
+        btnClose.setOnAction(e -> bulkStage.close());
+
+        layout.getChildren().addAll(title, operationComboBox, targetComboBox, txtAccountIDs, txtDays, btnRun, btnCancelJob, lblStatus, btnClose);
+
+        Scene scene = new Scene(layout, 400, 650);
+        bulkStage.setScene(scene);
+        bulkStage.show();
+    }
+
     private void deleteBankAccount(BankAccount bankAccount){
-        bankAccount.notifyObservers(); // Notified all observers
-        String accountNumber = bankAccount.accountNumber;
+        String accountNumber = bankAccount.getAccountNumber();
 
-        accounts.remove(accountNumber);
+        ledger.close(bankAccount); // Pay out the remaining balance so the books still balance; refuses a closed account
+        accounts.remove(accountNumber, bankAccount);
+        bankAccount.notifyObservers(); // Notified all observers
     }
     private void deleteClient() {
         Stage deleteStage = new Stage();
@@ -564,14 +754,19 @@ public class EnhancedBankManagementSystem extends Application {
         btnDelete.setOnAction(e -> {
             String accountNumber = txtAccountNumber.getText();
 
-            if (accounts.containsKey(accountNumber)) {
-                BankAccount bankAccountToDelete = accounts.get(accountNumber);
+            BankAccount bankAccountToDelete = accounts.get(accountNumber);
+            if (bankAccountToDelete != null) {
                 DeleteObserver deleteNotify = new DeleteObserver();
                 bankAccountToDelete.addObserver(deleteNotify);
 
-                deleteBankAccount(bankAccountToDelete); // Method where Observer pattern is used
-
-                bankAccountToDelete.removeObserver(deleteNotify);
+                try {
+                    deleteBankAccount(bankAccountToDelete); // Method where Observer pattern is used
+                } catch (IllegalStateException ex) {
+                    showAlert("Error", ex.getMessage(), Alert.AlertType.ERROR); // Closed by a bulk job meanwhile
+                    return;
+                } finally {
+                    bankAccountToDelete.removeObserver(deleteNotify);
+                }
 
                 showAlert("Success", "Client deleted successfully.", Alert.AlertType.INFORMATION);
                 deleteStage.close();
@@ -607,110 +802,6 @@ public class EnhancedBankManagementSystem extends Application {
             return password;
         }
     }
-
-//***************************************** O B S E R V E R   P A T T E R N *****************************************************************************************//
-
-    interface AccountObserver {
-        void update(BankAccount bankAccount);
-    }
-
-    public static class DeleteObserver implements AccountObserver {
-        @Override
-        public void update(BankAccount bankAccount) {
-            System.out.println("The Client " + bankAccount.accountHolder + " (" + bankAccount.accountNumber + ") has been deleted!");
-        }
-    }
-
-    public static class RegisterObserver implements AccountObserver {
-        @Override
-        public void update(BankAccount bankAccount) {
-            System.out.println("The Client " + bankAccount.accountHolder + " (" + bankAccount.accountNumber + ") has been registered!");
-        }
-    }
-
-    public static class BankAccount {
-        private final String accountNumber;
-        private final String accountHolder;
-        private double balance;
-        private String currency;
-        private final String password;
-        private final List<AccountObserver> observers = new ArrayList<>();
-
-        public BankAccount(String accountNumber, String accountHolder, double balance, String password) {
-            this.accountNumber = accountNumber;
-            this.accountHolder = accountHolder;
-            this.balance = balance;
-            this.password = password;
-        }
-
-        public StringProperty accountNumberProperty() {
-            return  new SimpleStringProperty(accountNumber);
-        }
-
-        public StringProperty accountHolderProperty() {
-            return new SimpleStringProperty(accountHolder);
-        }
-
-        public DoubleProperty balanceProperty() {
-            return new SimpleDoubleProperty(balance);
-        }
-
-        public StringProperty currencyProperty() {
-            return new SimpleStringProperty(currency);
-        }
-
-
-        public void addObserver(AccountObserver observer) {
-            observers.add(observer);
-        }
-
-        public void removeObserver(AccountObserver observer) {
-            observers.remove(observer);
-        }
-
-        private void notifyObservers() {
-            for (AccountObserver observer : observers) {
-                observer.update(this);
-            }
-        }
-    }
-
-//***************************************** F A C T O R Y   M E T H O D *****************************************************************************************//
-
-    public static class DollarBankAccount extends BankAccount {
-        public final String currency = "USD";
-        public DollarBankAccount(String accountNumber, String accountHolder, double balance, String password) {
-            super(accountNumber, accountHolder, balance, password);
-            super.currency = currency;
-        }
-        @Override
-        public StringProperty currencyProperty() {
-            return new SimpleStringProperty(currency);
-        }
-    }
-
-    public static class TengeBankAccount extends BankAccount {
-        public final String currency = "KZT";
-
-        public TengeBankAccount(String accountNumber, String accountHolder, double balance, String password) {
-            super(accountNumber, accountHolder, balance, password);
-            super.currency = currency;
-        }
-        @Override
-        public StringProperty currencyProperty() {
-            return new SimpleStringProperty(currency);
-        }
-    }
-
-    public static class BankAccountFactory {
-        public static BankAccount createBankAccount(String type, String accountNumber, String accountHolder, double balance, String password) {
-            return switch (type.toLowerCase()) {
-                case "dollar" -> new DollarBankAccount(accountNumber, accountHolder, balance, password);
-                case "tenge" -> new TengeBankAccount(accountNumber, accountHolder, balance, password);
-                default -> throw new IllegalArgumentException("Invalid bank account type: " + type);
-            };
-        }
-    }
 }
 
 
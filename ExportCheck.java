@@ -0,0 +1,348 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Export round trips, read back through ColumnFile.read: a full export holds every account and
+// every journal entry exactly as they are; the incremental run after it holds every account
+// deposited to, frozen, closed, opened again or opened since, and exactly the entries since; a
+// full run at the end holds the live accounts and the tombstones of the closed ones. Uses a store
+// too small to keep the accounts in memory and chunks small enough to need several files.
+// Exits with status 1 on the first failure.
+// Run with: java com.example.myjavafxapp.ExportCheck
+public class ExportCheck {
+
+    private static final int ACCOUNTS = 5_000;
+    private static final int HOT_ACCOUNTS = 200;
+    private static final int THREADS = 4;
+    private static final int CHUNK_ROWS = 1_000;
+    private static final String[] HOLDERS = {
+            "Plain Name",
+            "\u04D8\u043B\u0438\u044F \u041D\u04B1\u0440\u043B\u0430\u043D\u049B\u044B\u0437\u044B",
+            "\u674E\u5C0F\u9F99",
+    };
+
+    private static int checks;
+
+    public static void main(String[] args) {
+        Path directory = null;
+        try (Bank bank = new Bank()) {
+            directory = PrivateFiles.createTempDirectory("bank-export");
+            Random random = new Random(3);
+            long watermark = fullExport(bank, directory, random);
+            watermark = incrementalExport(bank, directory, random, watermark);
+            quietExport(bank, directory, watermark);
+            fullExportAfterClosures(bank, directory);
+        } catch (RuntimeException | AssertionError | IOException e) {
+            System.out.println("FAILED after " + checks + " checks: " + e);
+            e.printStackTrace(System.out);
+            System.exit(1);
+        } finally {
+            delete(directory);
+        }
+        System.out.println("OK, " + checks + " checks passed");
+    }
+
+    private static long fullExport(Bank bank, Path directory, Random random) throws IOException {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.open(i % 2 == 0 ? "dollar" : "tenge", "A" + i, 100 + i * 0.25);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BankAccount account = bank.store.get("A" + random.nextInt(ACCOUNTS));
+            if (i % 2 == 0) {
+                bank.ledger.deposit(account, 1 + random.nextInt(100) / 8.0);
+            } else {
+                bank.ledger.transfer(account, bank.store.get("A" + random.nextInt(ACCOUNTS)), 0.5);
+            }
+        }
+
+        Exporter.Result result = bank.exporter.export(directory, false);
+        long watermark = bank.ledger.getJournal().lastSequence();
+        check(result.isFull() && result.getSince() == 0 && result.getWatermark() == watermark, "full run: " + result);
+        check(result.getDirectory().equals(directory.resolve("run-full-" + watermark)), "run directory");
+        checkRun(directory, result);
+
+        Map<String, Row> rows = readAccounts(result.getDirectory());
+        check(rows.size() == ACCOUNTS && result.getAccounts() == ACCOUNTS, "every account: " + rows.size());
+        for (BankAccount account : bank.store.values()) {
+            checkRow(rows.get(account.getAccountNumber()), account);
+        }
+        checkTransactions(bank, result);
+        return watermark;
+    }
+
+    private static long incrementalExport(Bank bank, Path directory, Random random, long since) throws IOException {
+        Set<String> changed = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            String accountID = "A" + random.nextInt(ACCOUNTS);
+            bank.ledger.deposit(bank.store.get(accountID), 5);
+            changed.add(accountID);
+        }
+        for (int i = 0; i < 50; i++) {
+            String accountID = "A" + random.nextInt(ACCOUNTS);
+            if (bank.ledger.setFrozen(bank.store.get(accountID), true)) {
+                changed.add(accountID); // no posting: only the change sequence the freeze stamps shows it
+            }
+        }
+        List<String> closed = new ArrayList<>();
+        for (int i = 0; closed.size() < 50; i++) {
+            String accountID = "A" + (i * 97 % ACCOUNTS);
+            BankAccount account = bank.store.get(accountID);
+            if (account != null) {
+                bank.close(account);
+                closed.add(accountID);
+                changed.add(accountID);
+            }
+        }
+        for (String accountID : closed.subList(0, 10)) {
+            bank.open("tenge", accountID, 42); // the same ID opened again
+        }
+        for (int i = 0; i < 20; i++) {
+            bank.open("dollar", "N" + i, i);
+            changed.add("N" + i);
+        }
+
+        Exporter.Result result = bank.exporter.export(directory, false);
+        long watermark = bank.ledger.getJournal().lastSequence();
+        check(!result.isFull() && result.getSince() == since && result.getWatermark() == watermark, "incremental run: " + result);
+        check(result.getDirectory().equals(directory.resolve("run-" + since + "-" + watermark)), "run directory");
+        checkRun(directory, result);
+
+        Map<String, Row> rows = readAccounts(result.getDirectory());
+        check(rows.keySet().containsAll(changed), "every change exported");
+        check(rows.size() < ACCOUNTS / 2, "only what changed: " + rows.size());
+        for (Row row : rows.values()) {
+            check(row.changeSequence > since, "changed since the last run: " + row.accountID);
+            BankAccount account = bank.store.get(row.accountID);
+            checkRow(row, account != null ? account : bank.store.getRemoved(row.accountID));
+        }
+        for (String accountID : closed.subList(10, closed.size())) {
+            Row row = rows.get(accountID);
+            check(row.closed && row.balance == 0, "closure exported: " + accountID);
+        }
+        for (String accountID : closed.subList(0, 10)) {
+            Row row = rows.get(accountID);
+            check(!row.closed && row.balance == 42 && row.currency.equals("KZT"), "the account opened again: " + accountID);
+        }
+        check(checkTransactions(bank, result).getOrDefault(TransactionCommand.Kind.CLOSE, 0) == closed.size(),
+                "a CLOSE entry per closure");
+        return watermark;
+    }
+
+    // Nothing posted since: no entries, and only accounts stamped past the last watermark (by a freeze)
+    private static void quietExport(Bank bank, Path directory, long since) throws IOException {
+        Exporter.Result result = bank.exporter.export(directory, false);
+        check(result.getSince() == since && result.getWatermark() == since && result.getTransactions() == 0, "quiet run: " + result);
+        checkRun(directory, result);
+        for (Row row : readAccounts(result.getDirectory()).values()) {
+            check(row.frozen && row.changeSequence > since, "only freezes come again: " + row.accountID);
+        }
+    }
+
+    private static void fullExportAfterClosures(Bank bank, Path directory) throws IOException {
+        Exporter.Result result = bank.exporter.export(directory, true);
+        check(result.isFull() && result.getSince() == 0, "forced full run: " + result);
+        checkRun(directory, result);
+
+        Map<String, Row> rows = readAccounts(result.getDirectory());
+        int live = 0;
+        for (BankAccount account : bank.store.values()) {
+            checkRow(rows.get(account.getAccountNumber()), account);
+            live++;
+        }
+        int tombstones = 0;
+        for (Row row : rows.values()) {
+            if (row.closed) {
+                checkRow(row, bank.store.getRemoved(row.accountID));
+                tombstones++;
+            }
+        }
+        check(rows.size() == live + tombstones && tombstones == 40, "live accounts and closures: " + live + " + " + tombstones);
+        checkTransactions(bank, result);
+    }
+
+    // The manifest is there and agrees with the result, and the state file holds the watermark
+    private static void checkRun(Path directory, Exporter.Result result) throws IOException {
+        Properties manifest = load(result.getDirectory().resolve(Exporter.MANIFEST_FILE));
+        check(Long.parseLong(manifest.getProperty("watermark")) == result.getWatermark()
+                && Long.parseLong(manifest.getProperty("accounts.rows")) == result.getAccounts()
+                && Long.parseLong(manifest.getProperty("transactions.rows")) == result.getTransactions(), "manifest");
+        check(Long.parseLong(load(directory.resolve(Exporter.STATE_FILE)).getProperty("watermark")) == result.getWatermark(),
+                "state file");
+    }
+
+    private static void checkRow(Row row, BankAccount account) {
+        check(row != null && account != null, "exported and stored");
+        check(row.accountID.equals(account.getAccountNumber())
+                && Objects.equals(row.holder, account.getAccountHolder())
+                && row.currency.equals(account.getCurrency())
+                && row.balance == account.getBalance()
+                && row.frozen == account.isFrozen()
+                && row.closed == account.isClosed()
+                && row.lastActivity == account.getLastActivity()
+                && row.changeSequence == account.getChangeSequence(), "row matches the account: " + row.accountID);
+    }
+
+    // Every entry of the run's range exactly once and as journaled; returns the count per kind
+    private static Map<TransactionCommand.Kind, Integer> checkTransactions(Bank bank, Exporter.Result result) throws IOException {
+        long since = result.getSince();
+        List<JournalEntry> journaled = bank.ledger.getJournal().read(since, (int) (result.getWatermark() - since));
+        boolean[] seen = new boolean[journaled.size()];
+        Map<TransactionCommand.Kind, Integer> kinds = new HashMap<>();
+        int rows = 0;
+        for (Path file : files(result.getDirectory(), "transactions-")) {
+            ColumnFile.Table table = ColumnFile.read(file);
+            long[] sequence = table.longs("sequence");
+            long[] timestamp = table.longs("timestamp");
+            String[] kind = table.strings("kind");
+            String[] debitAccount = table.strings("debit_account");
+            String[] creditAccount = table.strings("credit_account");
+            double[] amount = table.doubles("amount");
+            double[] creditedAmount = table.doubles("credited_amount");
+            String[] debitCurrency = table.strings("debit_currency");
+            String[] creditCurrency = table.strings("credit_currency");
+            for (int i = 0; i < table.getRows(); i++) {
+                int index = (int) (sequence[i] - since - 1);
+                check(index >= 0 && index < seen.length && !seen[index], "entry #" + sequence[i] + " in range once");
+                seen[index] = true;
+                TransactionCommand exported = new TransactionCommand(TransactionCommand.Kind.valueOf(kind[i]), sequence[i],
+                        timestamp[i], debitAccount[i], creditAccount[i], amount[i], creditedAmount[i],
+                        debitCurrency[i], creditCurrency[i]);
+                check(exported.equals(journaled.get(index).getCommand()), "entry #" + sequence[i] + " as journaled");
+                kinds.merge(exported.getKind(), 1, Integer::sum);
+                rows++;
+            }
+        }
+        check(rows == seen.length && rows == result.getTransactions(), "every entry: " + rows + " of " + seen.length);
+        return kinds;
+    }
+
+    private static Map<String, Row> readAccounts(Path run) throws IOException {
+        Map<String, Row> rows = new HashMap<>();
+        List<Path> chunks = files(run, "accounts-");
+        for (Path file : chunks) {
+            ColumnFile.Table table = ColumnFile.read(file);
+            check(table.getRows() <= CHUNK_ROWS, "chunk size");
+            check(table.getColumnNames().stream().noneMatch(name -> name.contains("password")), "no password column");
+            String[] accountID = table.strings("account_id");
+            String[] holder = table.strings("holder");
+            String[] currency = table.strings("currency");
+            double[] balance = table.doubles("balance");
+            boolean[] frozen = table.booleans("frozen");
+            boolean[] closed = table.booleans("closed");
+            long[] lastActivity = table.longs("last_activity");
+            long[] changeSequence = table.longs("change_sequence");
+            for (int i = 0; i < table.getRows(); i++) {
+                Row row = new Row(accountID[i], holder[i], currency[i], balance[i], frozen[i], closed[i],
+                        lastActivity[i], changeSequence[i]);
+                check(rows.put(row.accountID, row) == null, "account exported once: " + row.accountID);
+            }
+        }
+        check(chunks.size() == (rows.size() + CHUNK_ROWS - 1) / CHUNK_ROWS, "chunk count");
+        return rows;
+    }
+
+    private static List<Path> files(Path run, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> chunks = Files.newDirectoryStream(run, prefix + "*")) {
+            chunks.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static void delete(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not delete " + directory + ": " + e);
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    // One account row as read back
+    private static final class Row {
+        private final String accountID;
+        private final String holder;
+        private final String currency;
+        private final double balance;
+        private final boolean frozen;
+        private final boolean closed;
+        private final long lastActivity;
+        private final long changeSequence;
+
+        Row(String accountID, String holder, String currency, double balance, boolean frozen, boolean closed,
+            long lastActivity, long changeSequence) {
+            this.accountID = accountID;
+            this.holder = holder;
+            this.currency = currency;
+            this.balance = balance;
+            this.frozen = frozen;
+            this.closed = closed;
+            this.lastActivity = lastActivity;
+            this.changeSequence = changeSequence;
+        }
+    }
+
+    private static final class Bank implements AutoCloseable {
+        private final TieredAccountStore store = TieredAccountStore.createTemporary(HOT_ACCOUNTS);
+        private final Ledger ledger = new Ledger();
+        private final Exporter exporter = new Exporter(store, ledger, THREADS, CHUNK_ROWS);
+        private int opened;
+
+        Bank() {
+            ledger.addObserver(store);
+        }
+
+        void open(String type, String accountID, double balance) {
+            ledger.open(BankAccountFactory.createBankAccount(type, accountID, HOLDERS[opened++ % HOLDERS.length], balance, null),
+                    store);
+        }
+
+        void close(BankAccount account) {
+            ledger.close(account);
+            store.remove(account.getAccountNumber(), account);
+        }
+
+        @Override
+        public void close() throws IOException {
+            store.close();
+            ledger.getJournal().close();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Nightly extract for reporting: the account store and the journal written as ColumnFile
+// chunks of at most chunkRows rows, which a pool of threads encodes, compresses and writes in
+// parallel. At most two chunks per thread are in flight, so memory stays bounded however many
+// accounts there are.
+//
+// Runs are incremental. Each run exports everything up to the ledger's current sequence (the
+// watermark) and records it in the state file; the next run exports only the journal entries
+// after it and the accounts whose change sequence is above it, new accounts included. An account
+// changed while a run is going may show up in that run and the next, never in neither. The
+// first run, or one with full set, exports every account and the whole journal. Closing stamps
+// the account with its CLOSE entry and the store keeps what was removed as a tombstone, so a
+// closure is exported as a row with closed set.
+//
+// Layout of the export directory:
+//
+//   export.state                          watermark of the last completed run
+//   run-<from>-<to>/accounts-00000.bcol   accounts changed in (from, to]
+//   run-<from>-<to>/transactions-00000.bcol
+//   run-<from>-<to>/manifest.properties   written last; a run without one is incomplete
+public class Exporter {
+
+    public static final String STATE_FILE = "export.state";
+    public static final String MANIFEST_FILE = "manifest.properties";
+    private static final int ACCOUNT_PASS_ATTEMPTS = 3;
+
+    private final TieredAccountStore accounts;
+    private final Ledger ledger;
+    private final int threads;
+    private final int chunkRows;
+
+    public Exporter(TieredAccountStore accounts, Ledger ledger, int threads, int chunkRows) {
+        if (threads <= 0 || chunkRows <= 0) {
+            throw new IllegalArgumentException("Thread count and chunk size must be positive.");
+        }
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.threads = threads;
+        this.chunkRows = chunkRows;
+    }
+
+    public Result export(Path directory, boolean full) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        Long lastWatermark = full ? null : readState(directory);
+        long since = lastWatermark == null ? 0 : lastWatermark;
+        // Every posting up to here is already applied to its accounts, and every account opened up to
+        // here is in the store: Ledger.open() stores it before its entry reaches the journal
+        long watermark = ledger.getJournal().lastSequence();
+        Path run = directory.resolve(lastWatermark == null ? "run-full-" + watermark : "run-" + since + "-" + watermark);
+        Files.createDirectories(run);
+        // Left over from an earlier attempt at the same run
+        Files.deleteIfExists(run.resolve(MANIFEST_FILE));
+        deleteChunks(run, "accounts-");
+        deleteChunks(run, "transactions-");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int next;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "export-" + next++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            Pass accountPass = null;
+            for (int attempt = 1; accountPass == null; attempt++) {
+                Pass pass = new Pass(pool, run, "accounts-");
+                try {
+                    exportAccounts(pass, lastWatermark == null ? Long.MIN_VALUE : since);
+                    accountPass = pass;
+                } catch (ConcurrentModificationException e) {
+                    // The account file grew under the walk; start the pass over rather than risk missing accounts
+                    pass.abandon();
+                    deleteChunks(run, "accounts-");
+                    if (attempt == ACCOUNT_PASS_ATTEMPTS) {
+                        throw new IllegalStateException("Accounts kept changing layout during the export; try again.");
+                    }
+                }
+            }
+            Pass transactionPass = new Pass(pool, run, "transactions-");
+            exportTransactions(transactionPass, since, watermark);
+
+            Result result = new Result(run, lastWatermark == null, since, watermark, accountPass, transactionPass,
+                    (System.nanoTime() - start) / 1_000_000);
+            writeProperties(run.resolve(MANIFEST_FILE), result.toProperties());
+            Properties state = new Properties();
+            state.setProperty("watermark", Long.toString(watermark));
+            writeProperties(directory.resolve(STATE_FILE), state);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void exportAccounts(Pass pass, long changedAfter) throws IOException, InterruptedException {
+        Iterator<BankAccount> it = accounts.changedSince(changedAfter);
+        while (it.hasNext()) {
+            // Values are copied out here, on the walking thread, so each row is one account at one moment
+            AccountChunk chunk = new AccountChunk(chunkRows);
+            while (it.hasNext() && chunk.rows < chunkRows) {
+                chunk.add(it.next());
+            }
+            pass.submit(chunk.rows, chunk::write);
+        }
+        pass.await();
+    }
+
+    private void exportTransactions(Pass pass, long since, long watermark) throws IOException, InterruptedException {
+        Journal journal = ledger.getJournal();
+        for (long from = since; from < watermark; from += chunkRows) {
+            // Entries never change once posted, so the worker can read them straight from the slice
+            List<JournalEntry> slice = journal.read(from, (int) Math.min(chunkRows, watermark - from));
+            pass.submit(slice.size(), path -> writeTransactions(slice, path));
+        }
+        pass.await();
+    }
+
+    private static long writeTransactions(List<JournalEntry> entries, Path path) throws IOException {
+        int rows = entries.size();
+        long[] sequence = new long[rows];
+        long[] timestamp = new long[rows];
+        String[] kind = new String[rows];
+        String[] debitAccount = new String[rows];
+        String[] creditAccount = new String[rows];
+        double[] amount = new double[rows];
+        double[] creditedAmount = new double[rows];
+        String[] debitCurrency = new String[rows];
+        String[] creditCurrency = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            TransactionCommand command = entries.get(i).getCommand();
+            sequence[i] = command.getSequence();
+            timestamp[i] = command.getTimestamp();
+            kind[i] = command.getKind().name();
+            debitAccount[i] = command.getDebitAccount();
+            creditAccount[i] = command.getCreditAccount();
+            amount[i] = command.getAmount();
+            creditedAmount[i] = command.getCreditedAmount();
+            debitCurrency[i] = command.getDebitCurrency();
+            creditCurrency[i] = command.getCreditCurrency();
+        }
+        return new ColumnFile.Writer(rows)
+                .longColumn("sequence", sequence)
+                .longColumn("timestamp", timestamp)
+                .stringColumn("kind", kind)
+                .stringColumn("debit_account", debitAccount)
+                .stringColumn("credit_account", creditAccount)
+                .doubleColumn("amount", amount)
+                .doubleColumn("credited_amount", creditedAmount)
+                .stringColumn("debit_currency", debitCurrency)
+                .stringColumn("credit_currency", creditCurrency)
+                .write(path);
+    }
+
+    private static Long readState(Path directory) throws IOException {
+        Path file = directory.resolve(STATE_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            state.load(in);
+        }
+        try {
+            return Long.parseLong(state.getProperty("watermark", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Corrupt export state in " + file + "; delete it for a full export.");
+        }
+    }
+
+    // Written next to the target and moved over it, so a crash never leaves half a file behind
+    private static void writeProperties(Path file, Properties properties) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteChunks(Path run, String prefix) throws IOException {
+        try (DirectoryStream<Path> chunks = Files.newDirectoryStream(run, prefix + "*")) {
+            for (Path chunk : chunks) {
+                Files.delete(chunk);
+            }
+        }
+    }
+
+    // Column values of up to chunkRows accounts. The password is never exported.
+    private static final class AccountChunk {
+        private final String[] accountID;
+        private final String[] holder;
+        private final String[] currency;
+        private final double[] balance;
+        private final boolean[] frozen;
+        private final boolean[] closed;
+        private final long[] lastActivity;
+        private final long[] changeSequence;
+        private int rows;
+
+        AccountChunk(int capacity) {
+            accountID = new String[capacity];
+            holder = new String[capacity];
+            currency = new String[capacity];
+            balance = new double[capacity];
+            frozen = new boolean[capacity];
+            closed = new boolean[capacity];
+            lastActivity = new long[capacity];
+            changeSequence = new long[capacity];
+        }
+
+        void add(BankAccount account) {
+            accountID[rows] = account.getAccountNumber();
+            holder[rows] = account.getAccountHolder();
+            currency[rows] = account.getCurrency();
+            balance[rows] = account.getBalance();
+            frozen[rows] = account.isFrozen();
+            closed[rows] = account.isClosed();
+            lastActivity[rows] = account.getLastActivity();
+            changeSequence[rows] = account.getChangeSequence();
+            rows++;
+        }
+
+        long write(Path path) throws IOException {
+            return new ColumnFile.Writer(rows)
+                    .stringColumn("account_id", accountID)
+                    .stringColumn("holder", holder)
+                    .stringColumn("currency", currency)
+                    .doubleColumn("balance", balance)
+                    .booleanColumn("frozen", frozen)
+                    .booleanColumn("closed", closed)
+                    .longColumn("last_activity", lastActivity)
+                    .longColumn("change_sequence", changeSequence)
+                    .write(path);
+        }
+    }
+
+    private interface ChunkWriter {
+        long write(Path path) throws IOException;
+    }
+
+    // The chunk files of one table, written by the pool with a cap on how many wait in memory
+    private final class Pass {
+        private final ExecutorService pool;
+        private final Path run;
+        private final String prefix;
+        private final Semaphore inFlight = new Semaphore(threads * 2);
+        private final List<Future<Long>> written = new ArrayList<>();
+        private long rows;
+        private long bytes;
+
+        Pass(ExecutorService pool, Path run, String prefix) {
+            this.pool = pool;
+            this.run = run;
+            this.prefix = prefix;
+        }
+
+        void submit(int chunkRows, ChunkWriter writer) throws InterruptedException {
+            Path path = run.resolve(String.format("%s%05d.bcol", prefix, written.size()));
+            inFlight.acquire();
+            rows += chunkRows;
+            try {
+                written.add(pool.submit(() -> {
+                    try {
+                        return writer.write(path);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        void await() throws IOException, InterruptedException {
+            for (Future<Long> file : written) {
+                try {
+                    bytes += file.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof UncheckedIOException io) {
+                        throw io.getCause();
+                    }
+                    throw new IllegalStateException("Export failed: " + e.getCause(), e.getCause());
+                }
+            }
+        }
+
+        // Waits for the chunks already handed out, ignoring how they went, so their files can be deleted
+        void abandon() throws InterruptedException {
+            for (Future<Long> file : written) {
+                try {
+                    file.get();
+                } catch (ExecutionException e) {
+                    // The pass is being thrown away anyway
+                }
+            }
+        }
+    }
+
+    public static final class Result {
+        private final Path directory;
+        private final boolean full;
+        private final long since;
+        private final long watermark;
+        private final long accounts;
+        private final int accountFiles;
+        private final long transactions;
+        private final int transactionFiles;
+        private final long bytes;
+        private final long millis;
+
+        private Result(Path directory, boolean full, long since, long watermark, Pass accountPass,
+                       Pass transactionPass, long millis) {
+            this.directory = directory;
+            this.full = full;
+            this.since = since;
+            this.watermark = watermark;
+            this.accounts = accountPass.rows;
+            this.accountFiles = accountPass.written.size();
+            this.transactions = transactionPass.rows;
+            this.transactionFiles = transactionPass.written.size();
+            this.bytes = accountPass.bytes + transactionPass.bytes;
+            this.millis = millis;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public boolean isFull() {
+            return full;
+        }
+
+        public long getSince() {
+            return since;
+        }
+
+        public long getWatermark() {
+            return watermark;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        private Properties toProperties() {
+            Properties manifest = new Properties();
+            manifest.setProperty("full", Boolean.toString(full));
+            manifest.setProperty("since", Long.toString(since));
+            manifest.setProperty("watermark", Long.toString(watermark));
+            manifest.setProperty("accounts.rows", Long.toString(accounts));
+            manifest.setProperty("accounts.files", Integer.toString(accountFiles));
+            manifest.setProperty("transactions.rows", Long.toString(transactions));
+            manifest.setProperty("transactions.files", Integer.toString(transactionFiles));
+            manifest.setProperty("bytes", Long.toString(bytes));
+            return manifest;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s export up to #%d into %s: %d accounts in %d files, %d transactions in %d files, "
+                            + "%d bytes, %d ms", full ? "Full" : "Incremental (after #" + since + ")", watermark,
+                    directory, accounts, accountFiles, transactions, transactionFiles, bytes, millis);
+        }
+    }
+}
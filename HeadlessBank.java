@@ -0,0 +1,231 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+import com.example.myjavafxapp.BankCore.BatchLogObserver;
+import com.example.myjavafxapp.BankCore.DeleteObserver;
+import com.example.myjavafxapp.BankCore.RegisterObserver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+// Command-line entry point for batch jobs, tests and servers. It runs the same ledger,
+// reconciler and account model as the JavaFX application but never touches a javafx.*
+// class, so it needs no display and no toolkit start-up. See headless.sh for the
+// class-data-sharing archive that makes it start fast.
+//
+// Usage: java com.example.myjavafxapp.HeadlessBank [--timing] [script]
+//
+// Commands are read one per line from the script, or from stdin when none is given:
+//
+//   open <dollar|tenge> <id> <balance> <password> <holder name...>
+//   deposit <id> <amount>
+//   withdraw <id> <amount>
+//   transfer <from id> <to id> <amount>
+//   balance <id>
+//   delete <id>
+//   bulk <freeze|unfreeze|close> <id...|--zero-balance|--inactive-days N>
+//   list
+//   reconcile
+//   stats
+//   export <directory> [--full]
+//   quit
+public class HeadlessBank {
+
+    private static final long RECONCILE_PERIOD_MILLIS = 5_000;
+    private static final int RECONCILE_SWEEP_EVERY = 12;
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final double BULK_ACCOUNTS_PER_SECOND = 2_000;
+    private static final int HOT_ACCOUNTS = Integer.getInteger("bank.hotAccounts", 100_000);
+    private static final int EXPORT_CHUNK_ROWS = 50_000;
+
+    private final TieredAccountStore accounts = TieredAccountStore.createTemporary(HOT_ACCOUNTS);
+    private final Ledger ledger = new Ledger();
+    private final Reconciler reconciler = new Reconciler(ledger, accounts, RECONCILE_SWEEP_EVERY);
+    private final BulkAdmin bulkAdmin = new BulkAdmin(accounts, ledger, BULK_CHUNK_SIZE, BULK_ACCOUNTS_PER_SECOND);
+    private final Exporter exporter = new Exporter(accounts, ledger, Runtime.getRuntime().availableProcessors(),
+            EXPORT_CHUNK_ROWS);
+    private int failures;
+
+    public static void main(String[] args) throws IOException {
+        boolean timing = false;
+        String script = null;
+        for (String arg : args) {
+            if (arg.equals("--timing")) {
+                timing = true;
+            } else {
+                script = arg;
+            }
+        }
+
+        HeadlessBank bank = new HeadlessBank();
+        bank.reconciler.addListener(discrepancy -> System.err.println("Reconciliation: " + discrepancy));
+        bank.reconciler.start(RECONCILE_PERIOD_MILLIS);
+        bank.bulkAdmin.addObserver(new BatchLogObserver());
+        bank.ledger.addObserver(bank.accounts);
+        if (timing) {
+            System.err.println("Ready in " + uptimeMillis() + " ms");
+        }
+
+        try (Reader in = script == null
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Path.of(script), StandardCharsets.UTF_8)) {
+            bank.run(new BufferedReader(in));
+        }
+        bank.reconciler.stop();
+        bank.bulkAdmin.shutdown();
+        System.out.println(bank.reconciler.reconcile());
+        bank.accounts.close();
+        bank.ledger.getJournal().close();
+        if (timing) {
+            System.err.println("Finished in " + uptimeMillis() + " ms");
+        }
+        if (bank.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("quit") || line.equals("exit")) {
+                return;
+            }
+            try {
+                // Only the holder name of "open" may contain spaces
+                execute(line.split("\\s+", line.startsWith("open ") ? 6 : 0));
+            } catch (NumberFormatException e) {
+                fail("Invalid amount. Please enter a valid number.");
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+
+    private void execute(String[] args) {
+        switch (args[0]) {
+            case "open" -> {
+                expect(args, 6, "open <dollar|tenge> <id> <balance> <password> <holder name>");
+                if (accounts.containsKey(args[2])) {
+                    throw new IllegalArgumentException("The Client with this ID already exists!");
+                }
+                BankAccount account = BankAccountFactory.createBankAccount(args[1], args[2], args[5],
+                        Double.parseDouble(args[3]), args[4]);
+                Ledger.checkOpening(account); // both before the announcement and the opening entry
+                accounts.checkStorable(account);
+                RegisterObserver registerObserver = new RegisterObserver();
+                account.addObserver(registerObserver);
+                account.notifyObservers();
+                account.removeObserver(registerObserver);
+                ledger.open(account, accounts);
+            }
+            case "deposit" -> {
+                expect(args, 3, "deposit <id> <amount>");
+                ledger.deposit(find(args[1]), Double.parseDouble(args[2]));
+            }
+            case "withdraw" -> {
+                expect(args, 3, "withdraw <id> <amount>");
+                ledger.withdraw(find(args[1]), Double.parseDouble(args[2]));
+            }
+            case "transfer" -> {
+                expect(args, 4, "transfer <from id> <to id> <amount>");
+                JournalEntry entry = ledger.transfer(find(args[1]), find(args[2]), Double.parseDouble(args[3]));
+                System.out.println(entry);
+            }
+            case "balance" -> {
+                expect(args, 2, "balance <id>");
+                BankAccount account = find(args[1]);
+                System.out.println(account.getAccountNumber() + " " + account.getBalance() + " " + account.getCurrency());
+            }
+            case "delete" -> {
+                expect(args, 2, "delete <id>");
+                BankAccount account = find(args[1]);
+                ledger.close(account); // refuses an account a bulk job closed meanwhile, before anything is announced
+                accounts.remove(args[1], account);
+                DeleteObserver deleteObserver = new DeleteObserver();
+                account.addObserver(deleteObserver);
+                account.notifyObservers();
+                account.removeObserver(deleteObserver);
+            }
+            case "bulk" -> {
+                expect(args, 3, "bulk <freeze|unfreeze|close> <id...|--zero-balance|--inactive-days N>");
+                BulkAdmin.Operation operation = BulkAdmin.Operation.valueOf(args[1].toUpperCase());
+                BulkAdmin.Job job;
+                if (args[2].equals("--zero-balance")) {
+                    job = bulkAdmin.submit(operation, BulkAdmin.zeroBalance());
+                } else if (args[2].equals("--inactive-days")) {
+                    expect(args, 4, "bulk <freeze|unfreeze|close> --inactive-days N");
+                    job = bulkAdmin.submit(operation, BulkAdmin.inactiveFor(Duration.ofDays(Long.parseLong(args[3]))));
+                } else {
+                    job = bulkAdmin.submit(operation, Arrays.asList(args).subList(2, args.length));
+                }
+                System.out.println(await(job));
+            }
+            case "list" -> {
+                for (BankAccount account : accounts.values()) {
+                    System.out.println(account.getAccountNumber() + "\t" + account.getAccountHolder() + "\t"
+                            + account.getBalance() + "\t" + account.getCurrency());
+                }
+            }
+            case "reconcile" -> System.out.println(reconciler.reconcile());
+            case "stats" -> System.out.println(accounts.getStats());
+            case "export" -> {
+                expect(args, 2, "export <directory> [--full]");
+                try {
+                    System.out.println(exporter.export(Path.of(args[1]), args.length > 2 && args[2].equals("--full")));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Export failed: " + e.getMessage());
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + args[0]);
+        }
+    }
+
+    // Scripts run in order, so a bulk command finishes before the next line is read
+    private static BulkAdmin.Job await(BulkAdmin.Job job) {
+        try {
+            return job.completion().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + job.getOperation());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(job.getOperation() + " failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private BankAccount find(String accountID) {
+        BankAccount account = accounts.get(accountID);
+        if (account == null) {
+            throw new IllegalArgumentException("Client not found: " + accountID);
+        }
+        return account;
+    }
+
+    // Only looked up for --timing, so java.management is not loaded otherwise
+    private static long uptimeMillis() {
+        return java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static void expect(String[] args, int count, String usage) {
+        if (args.length < count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    private void fail(String message) {
+        failures++;
+        System.err.println("Error: " + message);
+    }
+}
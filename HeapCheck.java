@@ -0,0 +1,104 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Opens accounts through the ledger into a tiered store, with transfers between them and the
+// reconciler (sweeps included) running along, and measures the heap in use after a full GC as
+// the account count grows. Everything kept per account has to live on disk, so once the hot
+// tier is full the heap must stay flat. Exits with status 1 if it grows by more than
+// ALLOWED_GROWTH_MB between the first checkpoint and any later one, or on any discrepancy.
+// Run with: java -Xmx128m com.example.myjavafxapp.HeapCheck [accounts] [hotAccounts]
+public class HeapCheck {
+
+    private static final int CHECKPOINTS = 10;
+    private static final int RECONCILES_PER_CHECKPOINT = 2;
+    private static final double ALLOWED_GROWTH_MB = 8;
+
+    private static int discrepancies;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // A real key derivation per account opened would take far longer than the rest; the
+        // records come out the same size either way
+        System.setProperty("bank.passwordIterations", "1");
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int hotAccounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int step = accounts / CHECKPOINTS;
+        if (step <= hotAccounts) {
+            System.out.println("Use at least " + CHECKPOINTS + " times as many accounts as hot accounts");
+            System.exit(1);
+        }
+
+        TieredAccountStore store = TieredAccountStore.createTemporary(hotAccounts);
+        Ledger ledger = new Ledger();
+        ledger.addObserver(store);
+        Reconciler reconciler = new Reconciler(ledger, store, 4);
+        reconciler.addListener(discrepancy -> {
+            discrepancies++;
+            System.out.println("Reconciliation: " + discrepancy);
+        });
+
+        Random random = new Random(42);
+        double baseline = 0;
+        double worst = 0;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < accounts; i++) {
+                String accountID = "H" + i;
+                BankAccount account = BankAccountFactory.createBankAccount(i % 2 == 0 ? "dollar" : "tenge", accountID,
+                        "Holder " + i, 1_000, "pw" + i);
+                store.checkStorable(account);
+                ledger.open(account, store);
+
+                // One transfer per account opened, from a random older one, so lookups miss the hot tier
+                BankAccount sender = store.get("H" + random.nextInt(i + 1));
+                if (sender != null && sender != account && sender.getBalance() >= 1) {
+                    ledger.transfer(sender, account, 1);
+                }
+
+                if ((i + 1) % (step / RECONCILES_PER_CHECKPOINT) == 0) {
+                    reconciler.reconcile();
+                }
+                if ((i + 1) % step == 0) {
+                    double used = usedHeapMB(store);
+                    if (baseline == 0) {
+                        baseline = used;
+                    }
+                    worst = Math.max(worst, used - baseline);
+                    System.out.printf("%,9d accounts  %6.1f MB heap after GC  journal #%,d  %.0f s%n",
+                            i + 1, used, ledger.getJournal().lastSequence(), (System.nanoTime() - start) / 1e9);
+                }
+            }
+            System.out.println(reconciler.reconcile());
+            System.out.println(store.getStats());
+        } finally {
+            store.close();
+            ledger.getJournal().close();
+        }
+
+        System.out.printf("Heap grew by at most %.1f MB over the first checkpoint (allowed %.1f MB)%n", worst, ALLOWED_GROWTH_MB);
+        if (worst > ALLOWED_GROWTH_MB || discrepancies > 0) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Flushes the store first, and follows each GC with a lookup, which makes the store drop the registry
+    // entries of the accounts that GC reclaimed (once the reference handler has queued them); otherwise
+    // the reading depends on when the last GC ran
+    private static double usedHeapMB(TieredAccountStore store) throws InterruptedException {
+        store.flush();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+            store.get("H0");
+        }
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+    }
+}
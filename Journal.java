@@ -0,0 +1,193 @@
+package com.example.myjavafxapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only list of posted entries. Entry n has sequence n, so readers can
+// resume from the last sequence they saw without scanning from the start.
+//
+// Only the newest entries are kept on the heap. Every TAIL_LIMIT entries the tail is written
+// out in one go to a log of BinaryCodec entry records, and the offset of each record goes to an
+// index file (8 bytes per entry), so reading from any sequence is one index read and then a
+// sequential read of the log. Written entries never change, so they are read without the lock,
+// each read through channels of its own: an interrupted reader closes only those, never the ones
+// the ledger appends through.
+public class Journal implements Closeable {
+
+    private static final int TAIL_LIMIT = 4096;
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final Path log;
+    private final Path index;
+    private final Path temporaryDirectory; // deleted on close, null unless created by createTemporary
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    private final List<JournalEntry> tail = new ArrayList<>();
+    private long written;   // entries 1..written are on disk
+    private long logSize;
+
+    // Both files are created readable by the owner only; nothing may exist at either path yet
+    public Journal(Path log, Path index) throws IOException {
+        this(log, index, null);
+    }
+
+    private Journal(Path log, Path index, Path temporaryDirectory) throws IOException {
+        this.log = log;
+        this.index = index;
+        this.temporaryDirectory = temporaryDirectory;
+        this.logChannel = PrivateFiles.create(log);
+        this.indexChannel = PrivateFiles.create(index);
+    }
+
+    // A journal kept in a new private directory under the temp directory; deleted again on close()
+    public static Journal createTemporary() {
+        try {
+            Path directory = PrivateFiles.createTempDirectory("bank-journal");
+            return new Journal(directory.resolve("journal.log"), directory.resolve("journal.idx"), directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void append(JournalEntry entry) {
+        long last = written + tail.size();
+        if (entry.getSequence() != last + 1) {
+            throw new IllegalStateException("Out of order journal entry: " + entry.getSequence() + " after " + last);
+        }
+        tail.add(entry);
+        if (tail.size() >= TAIL_LIMIT) {
+            writeTail();
+        }
+    }
+
+    public synchronized long lastSequence() {
+        return written + tail.size();
+    }
+
+    // Copies out at most max entries after afterSequence. The lock is held only to copy the part
+    // still in memory; the part on disk is read after it is released.
+    public List<JournalEntry> read(long afterSequence, int max) {
+        long from = Math.max(0, afterSequence);
+        long to;
+        long onDisk;
+        List<JournalEntry> fromTail;
+        synchronized (this) {
+            to = Math.min(written + tail.size(), from + max);
+            if (from >= to) {
+                return new ArrayList<>();
+            }
+            onDisk = Math.min(to, written);
+            fromTail = to > written
+                    ? new ArrayList<>(tail.subList((int) (Math.max(from, written) - written), (int) (to - written)))
+                    : List.of();
+        }
+        List<JournalEntry> entries = new ArrayList<>((int) (to - from));
+        if (from < onDisk) {
+            try {
+                readWritten(from, onDisk, entries);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        entries.addAll(fromTail);
+        return entries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        logChannel.close();
+        indexChannel.close();
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(index);
+        if (temporaryDirectory != null) {
+            Files.deleteIfExists(temporaryDirectory);
+        }
+    }
+
+    // One write for the records and one for their offsets, under the lock
+    private void writeTail() {
+        int size = 0;
+        for (JournalEntry entry : tail) {
+            size += BinaryCodec.entrySize(entry);
+        }
+        ByteBuffer records = ByteBuffer.allocate(size);
+        ByteBuffer offsets = ByteBuffer.allocate(tail.size() * 8);
+        for (JournalEntry entry : tail) {
+            offsets.putLong(logSize + records.position());
+            BinaryCodec.encodeEntry(entry, records);
+        }
+        records.flip();
+        offsets.flip();
+        try {
+            writeFully(logChannel, records, logSize);
+            writeFully(indexChannel, offsets, written * 8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logSize += size;
+        written += tail.size();
+        tail.clear();
+    }
+
+    // Decodes entries from + 1 to 'to', all of which are on disk, into out
+    private void readWritten(long from, long to, List<JournalEntry> out) throws IOException {
+        try (FileChannel indexReader = FileChannel.open(index, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS);
+             FileChannel logReader = FileChannel.open(log, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            ByteBuffer offset = ByteBuffer.allocate(8);
+            readFully(indexReader, offset, from * 8);
+            readEntries(logReader, offset.getLong(0), to - from, out);
+        }
+    }
+
+    private static void readEntries(FileChannel logReader, long position, long count, List<JournalEntry> out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+        buf.limit(0);
+        for (long n = 0; n < count; n++) {
+            if (!holdsRecord(buf)) {
+                // Refill from the start of the next record, growing the buffer for an oversized one
+                position += buf.position();
+                if (buf.remaining() >= BinaryCodec.HEADER_SIZE && BinaryCodec.recordLength(buf, buf.position()) > buf.capacity()) {
+                    buf = ByteBuffer.allocate(BinaryCodec.recordLength(buf, buf.position()));
+                }
+                buf.clear();
+                readFully(logReader, buf, position);
+                if (!holdsRecord(buf)) {
+                    throw new IllegalStateException("Journal log ends inside an entry at " + position);
+                }
+            }
+            out.add(BinaryCodec.decodeEntry(buf));
+        }
+    }
+
+    private static boolean holdsRecord(ByteBuffer buf) {
+        return buf.remaining() >= BinaryCodec.HEADER_SIZE
+                && buf.remaining() >= BinaryCodec.recordLength(buf, buf.position());
+    }
+
+    // Fills the buffer or stops at the end of the file, then flips it
+    private static void readFully(FileChannel from, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = from.read(buf, position);
+            if (n < 0) {
+                break;
+            }
+            position += n;
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel to, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += to.write(buf, position);
+        }
+    }
+}
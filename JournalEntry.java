@@ -0,0 +1,71 @@
+package com.example.myjavafxapp;
+
+import java.util.Collections;
+import java.util.List;
+
+// One posted transaction: the command that caused it plus its double-entry legs.
+// The legs of an entry always sum to zero per currency.
+public final class JournalEntry {
+
+    private final TransactionCommand command;
+    private final List<Posting> legs;
+
+    JournalEntry(TransactionCommand command, List<Posting> legs) {
+        this.command = command;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    public long getSequence() {
+        return command.getSequence();
+    }
+
+    public TransactionCommand getCommand() {
+        return command;
+    }
+
+    public List<Posting> getLegs() {
+        return legs;
+    }
+
+    @Override
+    public String toString() {
+        return command + " " + legs;
+    }
+
+    // A single debit (negative amount) or credit (positive amount) against one account.
+    // System accounts (cash in/out, FX position) exist only in the ledger, not in the account store.
+    public static final class Posting {
+        private final String accountID;
+        private final String currency;
+        private final double amount;
+        private final boolean system;
+
+        Posting(String accountID, String currency, double amount, boolean system) {
+            this.accountID = accountID;
+            this.currency = currency;
+            this.amount = amount;
+            this.system = system;
+        }
+
+        public String getAccountID() {
+            return accountID;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public boolean isSystem() {
+            return system;
+        }
+
+        @Override
+        public String toString() {
+            return accountID + (amount < 0 ? " DR " : " CR ") + Math.abs(amount) + " " + currency;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.AccountObserver;
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.CurrencyAdapter;
+import com.example.myjavafxapp.JournalEntry.Posting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+// Double-entry posting. Every balance change goes through here: the legs are applied and
+// the entry is appended to the journal under one lock, so the journal order is the order
+// in which balances changed. Money entering or leaving the bank is booked against the
+// CASH system account, currency conversions against the FX position account.
+//
+// Observers hear about every account whose state the ledger changed (balance or frozen flag),
+// still under the ledger lock, so they must not block.
+public class Ledger {
+
+    public static final String CASH = "CASH";
+    public static final String FX_POSITION = "FX";
+
+    private final Journal journal;
+    private final Map<String, Double> systemBalances = new ConcurrentHashMap<>();
+    private final List<AccountObserver> observers = new CopyOnWriteArrayList<>();
+    private long sequence;
+
+    // Posts to a journal in a private temp directory; close the journal when done with the ledger
+    public Ledger() {
+        this(Journal.createTemporary());
+    }
+
+    public Ledger(Journal journal) {
+        if (journal.lastSequence() != 0) {
+            throw new IllegalArgumentException("A new ledger needs an empty journal.");
+        }
+        this.journal = journal;
+    }
+
+    public void addObserver(AccountObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(AccountObserver observer) {
+        observers.remove(observer);
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public static String systemAccount(String kind, String currency) {
+        return kind + ":" + currency;
+    }
+
+    // Every system account balance together with the sequence they are as of, read under the lock
+    public synchronized SystemBalances systemBalances() {
+        return new SystemBalances(sequence, new HashMap<>(systemBalances));
+    }
+
+    // Books the balance a new account was created with and puts the account in accounts. The account
+    // already holds the balance, so only the journal and the cash account move. The store is written
+    // under the lock, before the entry reaches the journal: anyone who sees the opening entry (an
+    // export taking its watermark, a reconciliation pass) finds the account in the store.
+    public synchronized JournalEntry open(BankAccount account, Map<String, BankAccount> accounts) {
+        checkOpening(account);
+        double opening = account.getBalance();
+        long seq = ++sequence;
+        account.applyPosting(0, seq);
+        accounts.put(account.getAccountNumber(), account);
+        changed(account);
+        return post(TransactionCommand.deposit(seq, System.currentTimeMillis(), account.getAccountNumber(),
+                        opening, account.getCurrency()),
+                system(CASH, account.getCurrency(), -opening),
+                customer(account, opening));
+    }
+
+    // A new account must hold a finite amount of zero or more; callers check before announcing the account
+    public static void checkOpening(BankAccount account) {
+        double opening = account.getBalance();
+        if (!(opening >= 0) || Double.isInfinite(opening)) {
+            throw new IllegalArgumentException("The opening balance must be zero or a positive amount.");
+        }
+    }
+
+    public synchronized JournalEntry deposit(BankAccount account, double amount) {
+        checkAmount(amount);
+        checkActive(account);
+        long seq = ++sequence;
+        account.applyPosting(amount, seq);
+        changed(account);
+        return post(TransactionCommand.deposit(seq, System.currentTimeMillis(), account.getAccountNumber(),
+                        amount, account.getCurrency()),
+                system(CASH, account.getCurrency(), -amount),
+                customer(account, amount));
+    }
+
+    public synchronized JournalEntry withdraw(BankAccount account, double amount) {
+        checkAmount(amount);
+        checkActive(account);
+        checkFunds(account, amount);
+        long seq = ++sequence;
+        account.applyPosting(-amount, seq);
+        changed(account);
+        return post(TransactionCommand.withdraw(seq, System.currentTimeMillis(), account.getAccountNumber(),
+                        amount, account.getCurrency()),
+                customer(account, -amount),
+                system(CASH, account.getCurrency(), amount));
+    }
+
+    // Pays out whatever is left on an account that is being removed. Frozen accounts can be closed,
+    // closed ones cannot: a second CLOSE entry would be posted for an account that is already gone.
+    // The account is frozen and marked closed under the lock first, so nothing can be posted to it
+    // after the payout, which is booked as a CLOSE entry.
+    public synchronized JournalEntry close(BankAccount account) {
+        if (account.isClosed()) {
+            throw new IllegalStateException("Account " + account.getAccountNumber() + " is already closed.");
+        }
+        account.setFrozen(true);
+        account.markClosed();
+        double remaining = account.getBalance();
+        long seq = ++sequence;
+        account.applyPosting(-remaining, seq);
+        changed(account);
+        return post(TransactionCommand.close(seq, System.currentTimeMillis(), account.getAccountNumber(),
+                        remaining, account.getCurrency()),
+                customer(account, -remaining),
+                system(CASH, account.getCurrency(), remaining));
+    }
+
+    // Closes the account only if it still matches the condition once the lock is held, so a filter
+    // checked earlier without the lock (say, a zero balance) cannot close an account that has
+    // changed since. Returns false when it no longer matches or is closed already.
+    public synchronized boolean closeIf(BankAccount account, Predicate<BankAccount> condition) {
+        if (account.isClosed() || !condition.test(account)) {
+            return false;
+        }
+        close(account);
+        return true;
+    }
+
+    // Freezing goes through the ledger lock too, so it takes effect between two postings. It posts
+    // nothing, but the account is stamped with the next sequence number: that is above every entry
+    // so far, so an export taken up to the current sequence treats the change as still to come.
+    public synchronized boolean setFrozen(BankAccount account, boolean frozen) {
+        if (account.isFrozen() == frozen) {
+            return false;
+        }
+        account.setFrozen(frozen);
+        account.markChanged(sequence + 1);
+        changed(account);
+        return true;
+    }
+
+    // Same as setFrozen, but only if the account still matches the condition under the lock
+    public synchronized boolean setFrozenIf(BankAccount account, boolean frozen, Predicate<BankAccount> condition) {
+        return condition.test(account) && setFrozen(account, frozen);
+    }
+
+    public synchronized JournalEntry transfer(BankAccount sender, BankAccount recipient, double amount) {
+        checkAmount(amount);
+        checkActive(sender);
+        checkActive(recipient);
+        checkFunds(sender, amount);
+        String from = sender.getCurrency();
+        String to = recipient.getCurrency();
+
+        List<Posting> legs = new ArrayList<>(4);
+        double convertedAmount = amount;
+        legs.add(customer(sender, -amount));
+        if (!from.equals(to)) {
+            CurrencyAdapter adapter = BankCore.adapterFor(from, to);
+            if (adapter == null) {
+                throw new IllegalArgumentException("Unsupported currency conversion.");
+            }
+            convertedAmount = adapter.convert(amount);
+            legs.add(system(FX_POSITION, from, amount));
+            legs.add(system(FX_POSITION, to, -convertedAmount));
+        }
+        legs.add(customer(recipient, convertedAmount));
+
+        long seq = ++sequence;
+        sender.applyPosting(-amount, seq);
+        recipient.applyPosting(convertedAmount, seq);
+        changed(sender);
+        changed(recipient);
+        return post(TransactionCommand.transfer(seq, System.currentTimeMillis(), sender.getAccountNumber(),
+                        recipient.getAccountNumber(), amount, convertedAmount, from, to),
+                legs.toArray(new Posting[0]));
+    }
+
+    private void changed(BankAccount account) {
+        for (AccountObserver observer : observers) {
+            observer.update(account);
+        }
+    }
+
+    private JournalEntry post(TransactionCommand command, Posting... legs) {
+        for (Posting leg : legs) {
+            if (leg.isSystem()) {
+                systemBalances.merge(leg.getAccountID(), leg.getAmount(), Double::sum);
+            }
+        }
+        JournalEntry entry = new JournalEntry(command, List.of(legs));
+        journal.append(entry);
+        return entry;
+    }
+
+    private static Posting customer(BankAccount account, double amount) {
+        return new Posting(account.getAccountNumber(), account.getCurrency(), amount, false);
+    }
+
+    private static Posting system(String kind, String currency, double amount) {
+        return new Posting(systemAccount(kind, currency), currency, amount, true);
+    }
+
+    private static void checkAmount(double amount) {
+        if (!(amount > 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Please enter a positive amount.");
+        }
+    }
+
+    private static void checkActive(BankAccount account) {
+        if (account.isFrozen()) {
+            throw new IllegalStateException("Account " + account.getAccountNumber() + " is frozen.");
+        }
+    }
+
+    private static void checkFunds(BankAccount account, double amount) {
+        if (account.getBalance() < amount) {
+            throw new IllegalStateException("Insufficient funds. Available balance: " + account.getBalance());
+        }
+    }
+
+    public static final class SystemBalances {
+        private final long sequence;
+        private final Map<String, Double> balances;
+
+        SystemBalances(long sequence, Map<String, Double> balances) {
+            this.sequence = sequence;
+            this.balances = Collections.unmodifiableMap(balances);
+        }
+
+        // The last entry posted when the balances were read
+        public long getSequence() {
+            return sequence;
+        }
+
+        // System account ID to balance
+        public Map<String, Double> getBalances() {
+            return balances;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myjavafxapp;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+
+// Scratch files holding account data: a fresh directory under the temp directory that only the
+// owner can enter, and files in it that only the owner can read. Files are always created new,
+// so nothing planted in advance under the same name (a symlink, say) is ever followed.
+final class PrivateFiles {
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private PrivateFiles() {
+    }
+
+    // A new directory with an unpredictable name, rwx------ where the file system has permissions
+    static Path createTempDirectory(String prefix) throws IOException {
+        return POSIX
+                ? Files.createTempDirectory(prefix, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")))
+                : Files.createTempDirectory(prefix);
+    }
+
+    // Creates the file, rw-------, and opens it for reading and writing; fails if anything exists at that path
+    static FileChannel create(Path file) throws IOException {
+        EnumSet<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return POSIX
+                ? FileChannel.open(file, options, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : FileChannel.open(file, options, new FileAttribute<?>[0]);
+    }
+}
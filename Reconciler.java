@@ -0,0 +1,490 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.CurrencyAdapter;
+import com.example.myjavafxapp.JournalEntry.Posting;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background check that the ledger conserves money. Each pass folds the journal entries
+// posted since the previous pass and then verifies:
+//
+//   - every entry's legs sum to zero per currency,
+//   - every account touched since the last pass holds the balance the journal says it should,
+//   - every system account (CASH:*, FX:*) holds in the ledger what its legs in the journal add up to,
+//   - the FX position nets out to zero once valued in BASE_CURRENCY through the CurrencyAdapters.
+//
+// Every sweepEvery passes all accounts in the store are checked too, which catches balances
+// changed behind the ledger's back, and what they hold is added up per currency and compared
+// with the customer legs in the journal, which catches money that left the store with an
+// account record.
+//
+// A pass takes the ledger lock once, briefly, to read the system balances together with the
+// sequence they are as of, and folds the journal up to exactly that sequence. Accounts are read
+// without the lock. An account's change sequence is published before its balance, so when a
+// posting races with the check the account shows a sequence beyond the pass and is simply
+// looked at again next time; the sweep counts such an account at what the journal says it held.
+//
+// What the journal says an account holds is kept with the account, not here: each verified
+// account stores the balance it was verified at and its change sequence then (written back by
+// the store, or into the tombstone of a removed account). In memory there is only the sum of the
+// legs folded since, for accounts not verified yet. The journal is folded FOLD_BATCH entries at
+// a time, and once more than PENDING_LIMIT accounts are waiting they are checked before the next
+// slice, so that stays bounded however many accounts there are. A CLOSE entry ends an account's
+// history: legs after it belong to an account opened again under the same ID.
+public class Reconciler {
+
+    public static final double TOLERANCE = 0.005;
+    public static final String BASE_CURRENCY = "USD";
+    private static final int FOLD_BATCH = 10_000;
+    private static final int PENDING_LIMIT = 50_000;
+
+    public enum Check { UNBALANCED_ENTRY, BALANCE_MISMATCH, SYSTEM_BALANCE, CURRENCY_TOTAL, FX_POSITION }
+
+    public interface DiscrepancyListener {
+        void discrepancy(Discrepancy discrepancy);
+    }
+
+    private final Ledger ledger;
+    private final TieredAccountStore accounts;
+    private final int sweepEvery;
+    private final List<DiscrepancyListener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+    private volatile Report lastReport = new Report(0, 0, 0, 0);
+
+    // Reconciler state; only touched inside reconcile()
+    private long horizon;
+    private int passes;
+    private final Map<String, Double> pending = new HashMap<>(); // legs folded since the account was last verified
+    private final Map<String, Double> closing = new HashMap<>(); // the same, for accounts whose CLOSE was folded
+    private final Map<String, Double> systemTotals = new HashMap<>();   // system account ID to the sum of its legs
+    private final Map<String, Double> customerTotals = new HashMap<>(); // currency to the sum of all customer legs
+    private final Set<String> missingAtLastSweep = new HashSet<>();
+    private final Set<String> openIssues = new HashSet<>();
+    private int checked; // counts for the pass in progress
+    private int discrepancies;
+
+    public Reconciler(Ledger ledger, TieredAccountStore accounts, int sweepEvery) {
+        this.ledger = ledger;
+        this.accounts = accounts;
+        this.sweepEvery = sweepEvery;
+    }
+
+    public void addListener(DiscrepancyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DiscrepancyListener listener) {
+        listeners.remove(listener);
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reconciler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                System.err.println("Reconciliation pass failed: " + e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Lets a pass in progress finish, waiting outside the lock that pass holds: interrupting it
+    // could close the account file's channel mid-read
+    public void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = executor;
+            executor = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Runs one incremental pass and returns what it covered.
+    public synchronized Report reconcile() {
+        boolean sweep = sweepEvery > 0 && ++passes % sweepEvery == 0;
+        long structure = accounts.structuralChanges(); // read first, so any change after the snapshot shows
+        Ledger.SystemBalances system = ledger.systemBalances();
+        long target = system.getSequence();
+        Journal journal = ledger.getJournal();
+        discrepancies = 0;
+        checked = 0;
+        int entries = 0;
+        while (horizon < target) {
+            List<JournalEntry> slice = journal.read(horizon, (int) Math.min(FOLD_BATCH, target - horizon));
+            if (slice.isEmpty()) {
+                break;
+            }
+            for (JournalEntry entry : slice) {
+                discrepancies += fold(entry);
+                horizon = entry.getSequence();
+            }
+            entries += slice.size();
+            if (horizon < target && pending.size() + closing.size() > PENDING_LIMIT) {
+                // Checking the accounts folded so far before going on keeps the pending sums bounded
+                checkPending(false);
+            }
+        }
+
+        Map<String, Double> held = sweep ? sweep() : null;
+        checkPending(sweep);
+
+        if (horizon == target && (entries > 0 || sweep)) {
+            discrepancies += checkTotals(system.getBalances());
+            // A removal or rehash during the walk may have made it miss or repeat accounts; the next sweep compares
+            if (held != null && accounts.structuralChanges() == structure) {
+                discrepancies += checkCustomerTotals(held);
+            }
+        }
+
+        lastReport = new Report(horizon, entries, checked, discrepancies);
+        return lastReport;
+    }
+
+    // Checks every account in the store and returns what they held at the horizon per currency, or null if
+    // that cannot be told. Streams over the store rather than copying its keys, so a store that pages
+    // accounts in from disk never has to hold them all at once.
+    private Map<String, Double> sweep() {
+        Map<String, Double> held = new HashMap<>();
+        Set<String> deferred = new HashSet<>();
+        for (BankAccount account : accounts.values()) {
+            String accountID = account.getAccountNumber();
+            if (account.isClosed() && closing.containsKey(accountID)) {
+                continue; // paid out as of the horizon; checked against its CLOSE entry below
+            }
+            double folded = pending.getOrDefault(accountID, 0.0);
+            double balance = account.getBalance(); // read before verify() reads the sequence, like it does
+            if (verify(account, folded)) {
+                pending.remove(accountID);
+            } else {
+                // Posted to since the horizon: count what the journal says it held then
+                balance = account.getReconciledBalance() + folded;
+                deferred.add(accountID);
+            }
+            held.merge(account.getCurrency(), balance, Double::sum);
+        }
+
+        // Accounts posted to before the horizon that the walk did not meet: put in the store after it
+        // passed their slot, or removed from it (which holds nothing any more)
+        boolean complete = true;
+        for (Map.Entry<String, Double> touched : pending.entrySet()) {
+            if (deferred.contains(touched.getKey())) {
+                continue;
+            }
+            BankAccount account = accounts.get(touched.getKey());
+            if (account != null) {
+                held.merge(account.getCurrency(), account.getReconciledBalance() + touched.getValue(), Double::sum);
+            } else if (accounts.getRemoved(touched.getKey()) == null) {
+                complete = false; // between its opening entry and being put in the store
+            }
+        }
+        return complete ? held : null;
+    }
+
+    private void checkPending(boolean sweep) {
+        for (Iterator<Map.Entry<String, Double>> it = closing.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Double> closed = it.next();
+            if (verifyClosed(closed.getKey(), closed.getValue())) {
+                it.remove();
+            }
+        }
+
+        Set<String> missing = new HashSet<>();
+        for (Iterator<Map.Entry<String, Double>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Double> touched = it.next();
+            String accountID = touched.getKey();
+            BankAccount account = accounts.get(accountID);
+            if (account != null) {
+                if (verify(account, touched.getValue())) {
+                    it.remove();
+                }
+                continue;
+            }
+            BankAccount removed = accounts.getRemoved(accountID);
+            if (removed != null) {
+                if (verifyRemoved(removed, touched.getValue())) {
+                    it.remove();
+                }
+                continue;
+            }
+            // A missing account that still holds money may just be between its opening entry and
+            // being put in the store, so only report it if it is still missing at the next sweep.
+            double expected = touched.getValue();
+            if (differs(expected, TOLERANCE)) {
+                missing.add(accountID);
+                if (!sweep || !missingAtLastSweep.contains(accountID)) {
+                    continue;
+                }
+                discrepancies += report(Check.BALANCE_MISMATCH, accountID, expected, 0,
+                        "account missing from the store");
+            }
+            it.remove();
+        }
+        if (sweep) {
+            missingAtLastSweep.clear();
+            missingAtLastSweep.addAll(missing);
+        }
+    }
+
+    // Compares one account, or the tombstone of a removed one, with the journal: the balance it was
+    // last verified at plus the legs folded since. Returns false, without checking, when the account
+    // has a posting newer than this pass; it is looked at again next time.
+    private boolean verify(BankAccount account, double folded) {
+        // Balance first, then sequence: a posting newer than this pass shows up as a larger sequence
+        double actual = account.getBalance();
+        long seen = account.getChangeSequence();
+        if (seen > horizon) {
+            return false;
+        }
+        checked++;
+        String accountID = account.getAccountNumber();
+        double expected = account.getReconciledBalance() + folded;
+        if (differs(actual - expected, TOLERANCE)) {
+            discrepancies += report(Check.BALANCE_MISMATCH, accountID, expected, actual,
+                    "balance does not match the journal");
+        } else {
+            resolve(Check.BALANCE_MISMATCH, accountID);
+        }
+        // Untouched accounts are left alone, so a sweep writes back only what moved
+        if (folded != 0 || seen != account.getReconciledSequence()) {
+            accounts.markReconciled(account, expected, seen);
+        }
+        return true;
+    }
+
+    // The account a folded CLOSE entry was for: still in the store but closed, or its tombstone. Once
+    // the ID belongs to an account opened again the closed one has no record left to check.
+    private boolean verifyClosed(String accountID, double folded) {
+        BankAccount account = accounts.get(accountID);
+        if (account != null) {
+            return !account.isClosed() || verify(account, folded);
+        }
+        BankAccount removed = accounts.getRemoved(accountID);
+        return removed == null || verify(removed, folded);
+    }
+
+    // Postings to an account that was then removed without a CLOSE entry: the money must have left it
+    private boolean verifyRemoved(BankAccount removed, double folded) {
+        long seen = removed.getChangeSequence();
+        if (seen > horizon) {
+            return false;
+        }
+        checked++;
+        double expected = removed.getReconciledBalance() + folded;
+        if (differs(expected, TOLERANCE)) {
+            discrepancies += report(Check.BALANCE_MISMATCH, removed.getAccountNumber(), expected, 0,
+                    "account removed from the store without being closed");
+        }
+        accounts.markReconciled(removed, expected, seen);
+        return true;
+    }
+
+    private int fold(JournalEntry entry) {
+        Map<String, Double> entryTotals = new HashMap<>(4);
+        for (Posting leg : entry.getLegs()) {
+            entryTotals.merge(leg.getCurrency(), leg.getAmount(), Double::sum);
+            if (leg.isSystem()) {
+                systemTotals.merge(leg.getAccountID(), leg.getAmount(), Double::sum);
+                continue;
+            }
+            customerTotals.merge(leg.getCurrency(), leg.getAmount(), Double::sum);
+            if (entry.getCommand().getKind() == TransactionCommand.Kind.CLOSE) {
+                Double before = pending.remove(leg.getAccountID());
+                closing.put(leg.getAccountID(), (before == null ? 0 : before) + leg.getAmount());
+            } else {
+                pending.merge(leg.getAccountID(), leg.getAmount(), Double::sum);
+            }
+        }
+        int discrepancies = 0;
+        for (Map.Entry<String, Double> total : entryTotals.entrySet()) {
+            if (differs(total.getValue(), TOLERANCE)) {
+                discrepancies += report(Check.UNBALANCED_ENTRY, "#" + entry.getSequence() + " " + total.getKey(),
+                        0, total.getValue(), "entry legs do not sum to zero");
+            }
+        }
+        return discrepancies;
+    }
+
+    // The ledger's system balances were read at the horizon, so they must match the journal exactly as folded
+    private int checkTotals(Map<String, Double> ledgerBalances) {
+        int discrepancies = 0;
+        Set<String> systemAccounts = new TreeSet<>(systemTotals.keySet());
+        systemAccounts.addAll(ledgerBalances.keySet());
+        double net = 0;
+        for (String systemAccount : systemAccounts) {
+            double expected = systemTotals.getOrDefault(systemAccount, 0.0);
+            double actual = ledgerBalances.getOrDefault(systemAccount, 0.0);
+            if (differs(actual - expected, TOLERANCE)) {
+                discrepancies += report(Check.SYSTEM_BALANCE, systemAccount, expected, actual,
+                        "ledger balance does not match the journal");
+            } else {
+                resolve(Check.SYSTEM_BALANCE, systemAccount);
+            }
+
+            if (!systemAccount.startsWith(Ledger.FX_POSITION + ":")) {
+                continue;
+            }
+            String currency = systemAccount.substring(Ledger.FX_POSITION.length() + 1);
+            double amount = expected;
+            if (!currency.equals(BASE_CURRENCY)) {
+                CurrencyAdapter adapter = BankCore.adapterFor(currency, BASE_CURRENCY);
+                if (adapter == null) {
+                    discrepancies += report(Check.FX_POSITION, currency, 0, amount,
+                            "no conversion to " + BASE_CURRENCY + " for this position");
+                    continue;
+                }
+                amount = adapter.convert(amount);
+            }
+            net += amount;
+        }
+        if (differs(net, TOLERANCE)) {
+            discrepancies += report(Check.FX_POSITION, BASE_CURRENCY, 0, net, "FX position does not net out");
+        } else {
+            resolve(Check.FX_POSITION, BASE_CURRENCY);
+        }
+        return discrepancies;
+    }
+
+    // What the accounts in the store held at the horizon against what the journal paid into them. Both are
+    // sums over every account, so the rounding allowed grows with the total.
+    private int checkCustomerTotals(Map<String, Double> held) {
+        int discrepancies = 0;
+        Set<String> currencies = new TreeSet<>(customerTotals.keySet());
+        currencies.addAll(held.keySet());
+        for (String currency : currencies) {
+            double expected = customerTotals.getOrDefault(currency, 0.0);
+            double actual = held.getOrDefault(currency, 0.0);
+            if (differs(actual - expected, TOLERANCE + Math.abs(expected) * 1e-9)) {
+                discrepancies += report(Check.CURRENCY_TOTAL, currency, expected, actual,
+                        "accounts in the store do not add up to the journal");
+            } else {
+                resolve(Check.CURRENCY_TOTAL, currency);
+            }
+        }
+        return discrepancies;
+    }
+
+    // Written so that it is false only for a difference within tolerance: a NaN is always reported
+    private static boolean differs(double difference, double tolerance) {
+        return !(Math.abs(difference) <= tolerance);
+    }
+
+    // Each problem is reported once until it goes away, not on every pass
+    private int report(Check check, String subject, double expected, double actual, String message) {
+        if (!openIssues.add(check + ":" + subject)) {
+            return 0;
+        }
+        Discrepancy discrepancy = new Discrepancy(check, subject, expected, actual, horizon, message);
+        for (DiscrepancyListener listener : listeners) {
+            listener.discrepancy(discrepancy);
+        }
+        return 1;
+    }
+
+    private void resolve(Check check, String subject) {
+        openIssues.remove(check + ":" + subject);
+    }
+
+    public static final class Discrepancy {
+        private final Check check;
+        private final String subject;
+        private final double expected;
+        private final double actual;
+        private final long sequence;
+        private final String message;
+
+        Discrepancy(Check check, String subject, double expected, double actual, long sequence, String message) {
+            this.check = check;
+            this.subject = subject;
+            this.expected = expected;
+            this.actual = actual;
+            this.sequence = sequence;
+            this.message = message;
+        }
+
+        public Check getCheck() {
+            return check;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public double getExpected() {
+            return expected;
+        }
+
+        public double getActual() {
+            return actual;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %s (expected %.2f, actual %.2f, as of #%d)",
+                    check, subject, message, expected, actual, sequence);
+        }
+    }
+
+    public static final class Report {
+        private final long sequence;
+        private final int entries;
+        private final int accounts;
+        private final int discrepancies;
+
+        Report(long sequence, int entries, int accounts, int discrepancies) {
+            this.sequence = sequence;
+            this.entries = entries;
+            this.accounts = accounts;
+            this.discrepancies = discrepancies;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public int getAccounts() {
+            return accounts;
+        }
+
+        public int getDiscrepancies() {
+            return discrepancies;
+        }
+
+        @Override
+        public String toString() {
+            return "Reconciled up to #" + sequence + ": " + entries + " entries, " + accounts
+                    + " accounts, " + discrepancies + " new discrepancies";
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.BankAccount;
+import com.example.myjavafxapp.BankCore.BankAccountFactory;
+import com.example.myjavafxapp.Reconciler.Check;
+import com.example.myjavafxapp.Reconciler.Discrepancy;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Reconciliation checks: a busy ledger with currency conversions reconciles clean, and a balance
+// changed behind the ledger's back, an account removed without a CLOSE entry and a tampered system
+// balance are each reported. Every pass sweeps, over a store too small to keep the accounts in
+// memory. Exits with status 1 on the first failure.
+// Run with: java com.example.myjavafxapp.ReconcilerCheck
+public class ReconcilerCheck {
+
+    private static final int HOT_ACCOUNTS = 50;
+
+    private static int checks;
+
+    public static void main(String[] args) {
+        try {
+            cleanLedger();
+            tamperedBalance();
+            removedWithoutClose();
+            reopenedIDs();
+            tamperedSystemBalance();
+            rejectedOpenings();
+        } catch (RuntimeException | AssertionError | IOException | ReflectiveOperationException e) {
+            System.out.println("FAILED after " + checks + " checks: " + e);
+            e.printStackTrace(System.out);
+            System.exit(1);
+        }
+        System.out.println("OK, " + checks + " checks passed");
+    }
+
+    // Deposits, withdrawals and transfers in both directions between dollars and tenge, with
+    // amounts that do not add up exactly in binary; the FX position must still net out
+    private static void cleanLedger() throws IOException {
+        try (Bank bank = new Bank()) {
+            Random random = new Random(7);
+            int n = 500;
+            for (int i = 0; i < n; i++) {
+                bank.open(i % 2 == 0 ? "dollar" : "tenge", "C" + i, 100 + i * 0.37);
+            }
+            check(bank.pass().isEmpty(), "openings reconcile");
+            for (int i = 0; i < 3_000; i++) {
+                BankAccount account = bank.store.get("C" + random.nextInt(n));
+                switch (i % 3) {
+                    case 0 -> bank.ledger.deposit(account, 0.01 + random.nextInt(10_000) / 100.0);
+                    case 1 -> {
+                        if (account.getBalance() >= 1) {
+                            bank.ledger.withdraw(account, account.getBalance() / 3);
+                        }
+                    }
+                    default -> {
+                        BankAccount recipient = bank.store.get("C" + random.nextInt(n));
+                        if (recipient != account && account.getBalance() >= 1) {
+                            bank.ledger.transfer(account, recipient, account.getBalance() / 7);
+                        }
+                    }
+                }
+                if (i % 1_000 == 999) {
+                    check(bank.pass().isEmpty(), "postings reconcile");
+                }
+            }
+            check(bank.pass().isEmpty(), "quiet pass");
+            check(bank.reconciler.getLastReport().getSequence() == bank.ledger.getJournal().lastSequence(), "caught up");
+            Map<String, Double> system = bank.ledger.systemBalances().getBalances();
+            check(system.getOrDefault(Ledger.systemAccount(Ledger.FX_POSITION, "USD"), 0.0) != 0
+                    && system.getOrDefault(Ledger.systemAccount(Ledger.FX_POSITION, "KZT"), 0.0) != 0, "FX positions taken");
+        }
+    }
+
+    private static void tamperedBalance() throws IOException {
+        try (Bank bank = new Bank()) {
+            BankAccount account = bank.open("dollar", "T", 50);
+            bank.open("dollar", "U", 10);
+            check(bank.pass().isEmpty(), "clean before tampering");
+
+            account.applyPosting(7, account.getChangeSequence()); // not through the ledger
+            List<Discrepancy> reported = bank.pass();
+            check(has(reported, Check.BALANCE_MISMATCH, "T", 50, 57), "tampered balance reported");
+            check(has(reported, Check.CURRENCY_TOTAL, "USD", 60, 67), "tampered total reported");
+            check(bank.pass().isEmpty(), "reported once");
+
+            account.applyPosting(-7, account.getChangeSequence());
+            check(bank.pass().isEmpty(), "put right");
+            account.applyPosting(-3, account.getChangeSequence());
+            check(has(bank.pass(), Check.BALANCE_MISMATCH, "T", 50, 47), "reported again once it recurs");
+
+            account.applyPosting(3, account.getChangeSequence());
+            check(bank.pass().isEmpty(), "put right again");
+            account.applyPosting(Double.NaN, account.getChangeSequence());
+            check(has(bank.pass(), Check.BALANCE_MISMATCH, "T", 50, Double.NaN), "NaN balance reported");
+        }
+    }
+
+    private static void removedWithoutClose() throws IOException {
+        // Verified, then removed: only the store total can tell
+        try (Bank bank = new Bank()) {
+            bank.open("dollar", "R", 30);
+            bank.open("dollar", "S", 5);
+            check(bank.pass().isEmpty(), "clean before removal");
+            bank.store.remove("R");
+            check(has(bank.pass(), Check.CURRENCY_TOTAL, "USD", 35, 5), "removal reported in the total");
+        }
+        // Posted to and removed before the pass: the account's own legs say it still held money
+        try (Bank bank = new Bank()) {
+            BankAccount account = bank.open("tenge", "R", 20);
+            bank.ledger.deposit(account, 5);
+            bank.store.remove("R");
+            List<Discrepancy> reported = bank.pass();
+            check(has(reported, Check.BALANCE_MISMATCH, "R", 25, 0), "removal reported for the account");
+            check(has(reported, Check.CURRENCY_TOTAL, "KZT", 25, 0), "removal reported in the total");
+        }
+    }
+
+    // A closed account's ID can be opened again; the legs after its CLOSE belong to the new account
+    private static void reopenedIDs() throws IOException {
+        try (Bank bank = new Bank()) {
+            BankAccount first = bank.open("dollar", "D", 40);
+            bank.open("tenge", "E", 1_000);
+            check(bank.pass().isEmpty(), "clean before closing");
+
+            bank.close(first);
+            try {
+                bank.ledger.close(first);
+                check(false, "closing twice refused");
+            } catch (IllegalStateException expected) {
+                checks++;
+            }
+            BankAccount second = bank.open("tenge", "D", 9_000);
+            bank.ledger.transfer(bank.store.get("E"), second, 100);
+            check(bank.pass().isEmpty(), "reopened across passes");
+
+            // Open, close and open again within one pass, the store evicting in between
+            BankAccount third = bank.open("dollar", "F", 12);
+            bank.ledger.deposit(third, 3);
+            bank.close(third);
+            for (int i = 0; i < HOT_ACCOUNTS * 2; i++) {
+                bank.open("dollar", "G" + i, 1);
+            }
+            BankAccount fourth = bank.open("tenge", "F", 7);
+            bank.ledger.transfer(fourth, bank.store.get("D"), 2);
+            check(bank.pass().isEmpty(), "reopened within a pass");
+            check(bank.store.get("F") == fourth && bank.store.get("F").getBalance() == 5, "the new account is stored");
+        }
+    }
+
+    // The ledger's own system balances changed without a journal entry (the field is private, so reached
+    // by reflection): each is reported against what the journal adds up to
+    private static void tamperedSystemBalance() throws IOException, ReflectiveOperationException {
+        try (Bank bank = new Bank()) {
+            BankAccount dollars = bank.open("dollar", "X", 100);
+            bank.open("tenge", "Y", 100);
+            bank.ledger.transfer(dollars, bank.store.get("Y"), 10);
+            check(bank.pass().isEmpty(), "clean before tampering");
+
+            Field field = Ledger.class.getDeclaredField("systemBalances");
+            field.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            Map<String, Double> systemBalances = (Map<String, Double>) field.get(bank.ledger);
+            String cash = Ledger.systemAccount(Ledger.CASH, "USD");
+            String fx = Ledger.systemAccount(Ledger.FX_POSITION, "KZT");
+            systemBalances.merge(cash, 7.0, Double::sum);
+            systemBalances.merge(fx, 1.0, Double::sum);
+            List<Discrepancy> reported = bank.pass();
+            check(has(reported, Check.SYSTEM_BALANCE, cash, -100, -93), "cash balance reported");
+            check(has(reported, Check.SYSTEM_BALANCE, fx, -5_000, -4_999), "FX balance reported");
+            check(reported.size() == 2, "nothing else reported: " + reported);
+
+            systemBalances.merge(cash, -7.0, Double::sum);
+            systemBalances.merge(fx, -1.0, Double::sum);
+            check(bank.pass().isEmpty(), "put right");
+        }
+    }
+
+    private static void rejectedOpenings() throws IOException {
+        try (Bank bank = new Bank()) {
+            for (double opening : new double[]{Double.NaN, Double.POSITIVE_INFINITY, -1}) {
+                try {
+                    bank.open("dollar", "Z", opening);
+                    check(false, "opening with " + opening + " refused");
+                } catch (IllegalArgumentException expected) {
+                    checks++;
+                }
+            }
+            check(bank.ledger.getJournal().lastSequence() == 0 && !bank.store.containsKey("Z"), "nothing booked");
+        }
+    }
+
+    private static boolean has(List<Discrepancy> reported, Check check, String subject, double expected, double actual) {
+        for (Discrepancy discrepancy : reported) {
+            if (discrepancy.getCheck() == check && discrepancy.getSubject().equals(subject)
+                    && Math.abs(discrepancy.getExpected() - expected) < 1e-6
+                    && (Double.isNaN(actual) ? Double.isNaN(discrepancy.getActual())
+                    : Math.abs(discrepancy.getActual() - actual) < 1e-6)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void check(boolean condition, String what) {
+        checks++;
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    // A ledger, a small tiered store and a reconciler that sweeps on every pass
+    private static final class Bank implements AutoCloseable {
+        private final TieredAccountStore store = TieredAccountStore.createTemporary(HOT_ACCOUNTS);
+        private final Ledger ledger = new Ledger();
+        private final Reconciler reconciler = new Reconciler(ledger, store, 1);
+        private final List<Discrepancy> reported = new ArrayList<>();
+
+        Bank() {
+            ledger.addObserver(store);
+            reconciler.addListener(reported::add);
+        }
+
+        BankAccount open(String type, String accountID, double balance) {
+            BankAccount account = BankAccountFactory.createBankAccount(type, accountID, "Holder " + accountID, balance, null);
+            ledger.open(account, store);
+            return account;
+        }
+
+        void close(BankAccount account) {
+            ledger.close(account);
+            store.remove(account.getAccountNumber(), account);
+        }
+
+        // What one pass reported
+        List<Discrepancy> pass() {
+            reported.clear();
+            reconciler.reconcile();
+            return new ArrayList<>(reported);
+        }
+
+        @Override
+        public void close() throws IOException {
+            store.close();
+            ledger.getJournal().close();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.example.myjavafxapp;
+
+import com.example.myjavafxapp.BankCore.AccountObserver;
+import com.example.myjavafxapp.BankCore.BankAccount;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Account store that keeps only the recently used accounts on the heap. Every account has a
+// record in an AccountFile on disk; the hotCapacity most recently looked-up accounts are also
+// held in an LRU, and any other lookup is a miss that reads the record back.
+//
+// There is never more than one BankAccount object per ID, because the ledger and the screens
+// post to whichever object they hold. Every loaded account is registered under a weak reference:
+// an account evicted from the LRU but still held somewhere is found again instead of being
+// reloaded, and once nothing holds it the disk copy is current. Register the store as a Ledger
+// observer: changed accounts are kept strongly until the background flusher has written them.
+//
+// values() and entrySet() walk the file in slot order and do not disturb the LRU, so a bulk job
+// or reconciliation sweep over every account never evicts the live working set.
+//
+// Removing an account that ever had a posting leaves its final state behind as a closed
+// tombstone. The map no longer contains it, but changedSince() reports it, so exports see closures.
+public class TieredAccountStore extends AbstractMap<String, BankAccount> implements AccountObserver, AutoCloseable {
+
+    private static final long FLUSH_PERIOD_MILLIS = 200;
+    private static final int FLUSH_ASSIST = 16;
+
+    private final AccountFile file;
+    private final Path temporaryDirectory; // deleted on close, null unless created by createTemporary
+    private final int hotCapacity;
+    private final Map<String, BankAccount> hot;
+    private final ConcurrentHashMap<String, Ref> registry = new ConcurrentHashMap<>();
+    private final ReferenceQueue<BankAccount> collected = new ReferenceQueue<>();
+    private final ConcurrentHashMap<String, BankAccount> dirty = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object(); // orders disk writes against removals
+    private final ScheduledExecutorService flusher;
+    private volatile long removals;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+    private final AtomicLong maxMissNanos = new AtomicLong();
+
+    // The file at path must not exist yet; it is created readable by the owner only
+    public TieredAccountStore(Path path, int hotCapacity) throws IOException {
+        this(path, hotCapacity, null);
+    }
+
+    private TieredAccountStore(Path path, int hotCapacity, Path temporaryDirectory) throws IOException {
+        if (hotCapacity <= 0) {
+            throw new IllegalArgumentException("Hot capacity must be positive.");
+        }
+        this.file = new AccountFile(path, AccountFile.DEFAULT_SLOT_SIZE, hotCapacity * 2);
+        this.temporaryDirectory = temporaryDirectory;
+        this.hotCapacity = hotCapacity;
+        this.hot = Collections.synchronizedMap(new LinkedHashMap<>(hotCapacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BankAccount> eldest) {
+                return size() > TieredAccountStore.this.hotCapacity;
+            }
+        });
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "account-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.println("Account flush failed: " + e);
+            }
+        }, FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // A store backed by a file in a new private directory under the temp directory; both are
+    // deleted again on close()
+    public static TieredAccountStore createTemporary(int hotCapacity) {
+        try {
+            Path directory = PrivateFiles.createTempDirectory("bank-accounts");
+            return new TieredAccountStore(directory.resolve("accounts.dat"), hotCapacity, directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BankAccount get(Object key) {
+        if (!(key instanceof String accountID)) {
+            return null;
+        }
+        expunge();
+        if (dirty.size() > hotCapacity) {
+            // The flusher is falling behind: lookups help out, so unwritten accounts stay bounded
+            flush(FLUSH_ASSIST);
+        }
+        BankAccount account = resident(accountID);
+        if (account != null) {
+            hits.increment();
+        } else {
+            long start = System.nanoTime();
+            long removalsBefore = removals;
+            account = load(accountID, file.read(accountID), removalsBefore);
+            long elapsed = System.nanoTime() - start;
+            if (account == null) {
+                return null;
+            }
+            misses.increment();
+            missNanos.add(elapsed);
+            maxMissNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        hot.put(accountID, account);
+        return account;
+    }
+
+    // Looks at the resident accounts and the file, without loading or promoting anything
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String accountID && (resident(accountID) != null || file.contains(accountID));
+    }
+
+    // The final state of a removed account, as a detached copy, or null if it left no tombstone
+    public BankAccount getRemoved(String accountID) {
+        return file.readRemoved(accountID);
+    }
+
+    // Throws IllegalArgumentException if put would reject the account because its details do not
+    // fit in a record. The strings in a record never change, so an account that passes stays storable.
+    public void checkStorable(BankAccount account) {
+        file.checkFits(account);
+    }
+
+    // Written through to disk straight away, so the file always has a record for every account
+    @Override
+    public BankAccount put(String accountID, BankAccount account) {
+        if (!accountID.equals(account.getAccountNumber())) {
+            throw new IllegalArgumentException("Account stored under the wrong ID: " + accountID);
+        }
+        expunge();
+        BankAccount previous;
+        synchronized (writeLock) {
+            file.write(account);
+            Ref old = registry.put(accountID, new Ref(account, collected));
+            previous = old == null ? null : old.get();
+            dirty.remove(accountID);
+        }
+        hot.put(accountID, account);
+        return previous;
+    }
+
+    @Override
+    public BankAccount remove(Object key) {
+        if (!(key instanceof String accountID)) {
+            return null;
+        }
+        synchronized (writeLock) {
+            BankAccount previous = resident(accountID);
+            if (previous == null) {
+                previous = file.read(accountID);
+            }
+            if (previous != null) {
+                drop(previous);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof String accountID)) {
+            return false;
+        }
+        synchronized (writeLock) {
+            if (value == null || resident(accountID) != value) {
+                return false;
+            }
+            drop((BankAccount) value);
+            return true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return file.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, BankAccount>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, BankAccount>> iterator() {
+                Iterator<BankAccount> scan = new ScanIterator(Long.MIN_VALUE, false, Set.of(), false, true);
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return scan.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, BankAccount> next() {
+                        BankAccount account = scan.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(account.getAccountNumber(), account);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return TieredAccountStore.this.size();
+            }
+        };
+    }
+
+    // Ledger callback, under the ledger lock: only remember the account, the flusher writes it
+    @Override
+    public void update(BankAccount account) {
+        Ref ref = registry.get(account.getAccountNumber());
+        if (ref != null && ref.get() == account) {
+            dirty.put(account.getAccountNumber(), account);
+        }
+    }
+
+    // Stores what the Reconciler verified the account against with the account: on the object, which
+    // is then written back like any change, or in its tombstone if it has been removed meanwhile
+    public void markReconciled(BankAccount account, double balance, long sequence) {
+        synchronized (writeLock) {
+            account.markReconciled(balance, sequence);
+            String accountID = account.getAccountNumber();
+            if (resident(accountID) == account) {
+                dirty.put(accountID, account);
+            } else if (!file.contains(accountID)) {
+                file.rewriteRemoved(account);
+            }
+        }
+    }
+
+    // Writes every changed account to disk; runs on the flusher thread and on close()
+    public void flush() {
+        flush(Integer.MAX_VALUE);
+    }
+
+    private void flush(int limit) {
+        for (Iterator<BankAccount> it = dirty.values().iterator(); it.hasNext() && limit > 0; ) {
+            BankAccount account = it.next();
+            String accountID = account.getAccountNumber();
+            synchronized (writeLock) {
+                // Taken off the list before it is written: a posting that lands during the write puts it back.
+                // Both happen under the lock, so changedSince() never sees it in neither place.
+                if (!dirty.remove(accountID, account)) {
+                    continue;
+                }
+                limit--;
+                Ref ref = registry.get(accountID);
+                if (ref != null && ref.get() == account) {
+                    file.write(account);
+                }
+            }
+        }
+    }
+
+    // Every account whose change sequence is above the given one, each exactly once, including the
+    // tombstones of removed accounts. Accounts with unwritten changes come first; the file is then
+    // walked reading only the records whose stored sequence is above it. A change made while the
+    // walk runs may or may not be seen.
+    //
+    // This is a read-only walk: accounts that are not in memory come back as detached copies of
+    // their record, not registered like get() would, so never post to what it returns.
+    //
+    // Unlike values(), the walk fails with ConcurrentModificationException if the file is rehashed
+    // under it (new accounts pushing it past its load factor), because it could miss accounts.
+    public Iterator<BankAccount> changedSince(long sequence) {
+        List<BankAccount> unwritten = new ArrayList<>();
+        Set<String> unwrittenIDs = new HashSet<>();
+        synchronized (writeLock) {
+            for (BankAccount account : dirty.values()) {
+                if (account.getChangeSequence() > sequence) {
+                    unwritten.add(account);
+                    unwrittenIDs.add(account.getAccountNumber());
+                }
+            }
+        }
+        Iterator<BankAccount> scan = new ScanIterator(sequence, true, unwrittenIDs, true, false);
+        Iterator<BankAccount> first = unwritten.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return first.hasNext() || scan.hasNext();
+            }
+
+            @Override
+            public BankAccount next() {
+                return first.hasNext() ? first.next() : scan.next();
+            }
+        };
+    }
+
+    // Bumped by every removal and by every rehash of the file. While it stays the same, a walk over
+    // values() meets every account in the store exactly once.
+    long structuralChanges() {
+        return removals + file.rehashes();
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), missNanos.sum(), maxMissNanos.get(), hot.size(), hotCapacity,
+                dirty.size(), size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Not shutdownNow(): interrupting a write in progress would close the file's channel under it
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        file.close();
+        if (temporaryDirectory != null) {
+            Files.deleteIfExists(temporaryDirectory);
+        }
+    }
+
+    private BankAccount resident(String accountID) {
+        Ref ref = registry.get(accountID);
+        return ref == null ? null : ref.get();
+    }
+
+    // Makes a record read from disk the account's object, unless another thread got there first.
+    // An account removed since the record was read must not be brought back.
+    private BankAccount load(String accountID, BankAccount fromDisk, long removalsBefore) {
+        if (fromDisk == null) {
+            return null;
+        }
+        Ref ref = registry.compute(accountID, (id, current) ->
+                current != null && current.get() != null ? current : new Ref(fromDisk, collected));
+        if (removals != removalsBefore && !file.contains(accountID)) {
+            registry.remove(accountID, ref);
+            return null;
+        }
+        BankAccount account = ref.get();
+        return account != null ? account : fromDisk;
+    }
+
+    // An account without postings leaves no trace; any other is kept as a closed tombstone
+    private void drop(BankAccount account) {
+        String accountID = account.getAccountNumber();
+        if (account.getChangeSequence() > 0) {
+            account.markClosed();
+            file.bury(account);
+        } else {
+            file.delete(accountID);
+        }
+        removals++;
+        registry.remove(accountID);
+        dirty.remove(accountID);
+        hot.remove(accountID);
+    }
+
+    // Forgets the registry entries of accounts the garbage collector has already reclaimed
+    private void expunge() {
+        Ref ref;
+        while ((ref = (Ref) collected.poll()) != null) {
+            registry.remove(ref.accountID, ref);
+        }
+    }
+
+    private static final class Ref extends WeakReference<BankAccount> {
+        private final String accountID;
+
+        Ref(BankAccount account, ReferenceQueue<BankAccount> queue) {
+            super(account, queue);
+            this.accountID = account.getAccountNumber();
+        }
+    }
+
+    // Walks the file a batch of slots at a time. Resident accounts are returned as they are; the
+    // others are registered but not promoted into the LRU. Tombstones are never registered.
+    private final class ScanIterator implements Iterator<BankAccount> {
+        private final long changedAfter;
+        private final boolean withRemoved;
+        private final Set<String> skip;
+        private final boolean failOnRehash;
+        private final boolean register;
+        private final int rehashes = file.rehashes();
+        private final List<BankAccount> batch = new ArrayList<>();
+        private int nextSlot;
+        private int index;
+
+        ScanIterator(long changedAfter, boolean withRemoved, Set<String> skip, boolean failOnRehash, boolean register) {
+            this.changedAfter = changedAfter;
+            this.withRemoved = withRemoved;
+            this.skip = skip;
+            this.failOnRehash = failOnRehash;
+            this.register = register;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index == batch.size() && nextSlot >= 0) {
+                batch.clear();
+                index = 0;
+                expunge();
+                long removalsBefore = removals;
+                nextSlot = file.scan(nextSlot, changedAfter, withRemoved, batch);
+                if (failOnRehash && file.rehashes() != rehashes) {
+                    throw new ConcurrentModificationException("Account file was rehashed during the walk.");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    BankAccount account = batch.get(i);
+                    String accountID = account.getAccountNumber();
+                    if (skip.contains(accountID)) {
+                        batch.set(i, null);
+                    } else if (register) {
+                        batch.set(i, load(accountID, account, removalsBefore));
+                    } else {
+                        BankAccount live = resident(accountID);
+                        if (live != null) {
+                            batch.set(i, live);
+                        }
+                    }
+                }
+                batch.removeIf(Objects::isNull);
+            }
+            return index < batch.size();
+        }
+
+        @Override
+        public BankAccount next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(index++);
+        }
+    }
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long missNanos;
+        private final long maxMissNanos;
+        private final int hot;
+        private final int hotCapacity;
+        private final int dirty;
+        private final int accounts;
+
+        Stats(long hits, long misses, long missNanos, long maxMissNanos, int hot, int hotCapacity, int dirty,
+              int accounts) {
+            this.hits = hits;
+            this.misses = misses;
+            this.missNanos = missNanos;
+            this.maxMissNanos = maxMissNanos;
+            this.hot = hot;
+            this.hotCapacity = hotCapacity;
+            this.dirty = dirty;
+            this.accounts = accounts;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        // Average time to load an account from disk
+        public double getMissMicros() {
+            return misses == 0 ? 0 : missNanos / 1_000.0 / misses;
+        }
+
+        public double getMaxMissMicros() {
+            return maxMissNanos / 1_000.0;
+        }
+
+        public int getHot() {
+            return hot;
+        }
+
+        public int getHotCapacity() {
+            return hotCapacity;
+        }
+
+        public int getDirty() {
+            return dirty;
+        }
+
+        public int getAccounts() {
+            return accounts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accounts, %d/%d hot, %d unflushed; hit rate %.1f%% (%d hits, %d misses), "
+                            + "miss latency %.1f us avg, %.1f us max",
+                    accounts, hot, hotCapacity, dirty, getHitRate() * 100, hits, misses, getMissMicros(),
+                    getMaxMissMicros());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.myjavafxapp;
+
+import java.util.Objects;
+
+// A single money movement as it leaves the JVM (journal, snapshot, replication).
+// Deposits have no debit account, withdrawals have no credit account.
+public final class TransactionCommand {
+
+    public enum Kind {
+        DEPOSIT, WITHDRAW, TRANSFER, CLOSE; // CLOSE pays out what is left on an account being closed
+
+        private static final Kind[] VALUES = values();
+
+        static Kind fromCode(int code) {
+            if (code < 0 || code >= VALUES.length) {
+                throw new IllegalArgumentException("Unknown transaction kind: " + code);
+            }
+            return VALUES[code];
+        }
+    }
+
+    private final Kind kind;
+    private final long sequence;
+    private final long timestamp;
+    private final String debitAccount;
+    private final String creditAccount;
+    private final double amount;
+    private final double creditedAmount;
+    private final String debitCurrency;
+    private final String creditCurrency;
+
+    public TransactionCommand(Kind kind, long sequence, long timestamp,
+                              String debitAccount, String creditAccount,
+                              double amount, double creditedAmount,
+                              String debitCurrency, String creditCurrency) {
+        this.kind = Objects.requireNonNull(kind);
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.debitAccount = debitAccount;
+        this.creditAccount = creditAccount;
+        this.amount = amount;
+        this.creditedAmount = creditedAmount;
+        this.debitCurrency = debitCurrency;
+        this.creditCurrency = creditCurrency;
+    }
+
+    public static TransactionCommand deposit(long sequence, long timestamp, String accountID, double amount, String currency) {
+        return new TransactionCommand(Kind.DEPOSIT, sequence, timestamp, null, accountID, amount, amount, currency, currency);
+    }
+
+    public static TransactionCommand withdraw(long sequence, long timestamp, String accountID, double amount, String currency) {
+        return new TransactionCommand(Kind.WITHDRAW, sequence, timestamp, accountID, null, amount, amount, currency, currency);
+    }
+
+    public static TransactionCommand close(long sequence, long timestamp, String accountID, double amount, String currency) {
+        return new TransactionCommand(Kind.CLOSE, sequence, timestamp, accountID, null, amount, amount, currency, currency);
+    }
+
+    // creditedAmount is the amount after currency conversion, in creditCurrency
+    public static TransactionCommand transfer(long sequence, long timestamp, String senderID, String recipientID,
+                                              double amount, double creditedAmount,
+                                              String senderCurrency, String recipientCurrency) {
+        return new TransactionCommand(Kind.TRANSFER, sequence, timestamp, senderID, recipientID,
+                amount, creditedAmount, senderCurrency, recipientCurrency);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getDebitAccount() {
+        return debitAccount;
+    }
+
+    public String getCreditAccount() {
+        return creditAccount;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getCreditedAmount() {
+        return creditedAmount;
+    }
+
+    public String getDebitCurrency() {
+        return debitCurrency;
+    }
+
+    public String getCreditCurrency() {
+        return creditCurrency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionCommand)) return false;
+        TransactionCommand that = (TransactionCommand) o;
+        return kind == that.kind && sequence == that.sequence && timestamp == that.timestamp
+                && Double.compare(amount, that.amount) == 0
+                && Double.compare(creditedAmount, that.creditedAmount) == 0
+                && Objects.equals(debitAccount, that.debitAccount)
+                && Objects.equals(creditAccount, that.creditAccount)
+                && Objects.equals(debitCurrency, that.debitCurrency)
+                && Objects.equals(creditCurrency, that.creditCurrency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, sequence, debitAccount, creditAccount);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " #" + sequence + " " + debitAccount + " -> " + creditAccount + " "
+                + amount + " " + debitCurrency + " / " + creditedAmount + " " + creditCurrency;
+    }
+}
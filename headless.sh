@@ -0,0 +1,43 @@
+#!/bin/sh
+# Runs the ledger core without JavaFX (com.example.myjavafxapp.HeadlessBank).
+#
+#   ./headless.sh [--timing] [script]      commands are read from stdin when no script is given
+#
+# The first run compiles the core into build/headless/bank-core.jar (AppCDS only archives
+# classes loaded from jars, not from directories) and records an AppCDS archive of the
+# classes a typical session loads (cds/training.txt). Later runs map that archive instead of
+# loading and verifying those classes again. Delete build/headless after changing the sources.
+# JAVA_HOME selects the JDK (17 or newer); JAVA_OPTS is passed to the JVM.
+set -e
+
+DIR=$(cd "$(dirname "$0")" && pwd)
+OUT="$DIR/build/headless"
+CLASSES="$OUT/classes"
+JAR="$OUT/bank-core.jar"
+ARCHIVE="$OUT/bank.jsa"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+JARTOOL="${JAVA_HOME:+$JAVA_HOME/bin/}jar"
+MAIN=com.example.myjavafxapp.HeadlessBank
+
+# Only the javafx-free sources; compiling them without JavaFX on the classpath keeps it that way
+CORE="BankCore BulkAdmin Ledger Journal JournalEntry Reconciler TransactionCommand BinaryCodec PrivateFiles AccountFile TieredAccountStore ColumnFile Exporter HeadlessBank"
+
+if [ ! -f "$JAR" ]; then
+    rm -rf "$CLASSES" "$ARCHIVE"
+    mkdir -p "$CLASSES"
+    SOURCES=""
+    for name in $CORE; do
+        SOURCES="$SOURCES $DIR/$name.java"
+    done
+    # shellcheck disable=SC2086
+    "$JAVAC" -d "$CLASSES" $SOURCES
+    "$JARTOOL" --create --file "$JAR" -C "$CLASSES" .
+fi
+
+if [ ! -f "$ARCHIVE" ]; then
+    "$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$JAR" $MAIN "$DIR/cds/training.txt" > /dev/null
+fi
+
+# shellcheck disable=SC2086
+exec "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" $JAVA_OPTS -cp "$JAR" $MAIN "$@"